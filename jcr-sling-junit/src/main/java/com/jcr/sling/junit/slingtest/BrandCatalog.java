@@ -0,0 +1,15 @@
+package com.jcr.sling.junit.slingtest;
+
+/**
+ * Holds the current brand data read from the brand tags and the brand pages.
+ */
+public interface BrandCatalog {
+
+    /**
+     * Gets the current snapshot. A new snapshot replaces the previous one when a brand tag or page changes,
+     * so the snapshot of one call is consistent.
+     *
+     * @return the snapshot, null until the brands are loaded
+     */
+    BrandSnapshot getSnapshot();
+}
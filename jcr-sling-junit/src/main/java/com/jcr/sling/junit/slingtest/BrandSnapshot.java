@@ -0,0 +1,195 @@
+package com.jcr.sling.junit.slingtest;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSortedSet;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import org.apache.commons.lang.StringUtils;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Immutable brand data of one moment: the brand tags in repository order with the description and
+ * the Scene7 image of their brand page, and the names of the brand pages by brand. The brands handed out
+ * are new {@link Brand} objects on every call, so callers may change them.
+ */
+public final class BrandSnapshot {
+
+    private static final String HYPHEN = "-";
+    private static final String UNDERSCORE = "_";
+
+    private final List<Entry> entries;
+    private final Map<String, Entry> entriesByTagName;
+    private final Set<String> sortedTitles;
+    // lower-cased brand -> brand page name
+    private final Map<String, String> brandPageNames;
+
+    private BrandSnapshot(final List<Entry> entries, final Map<String, String> brandPageNames) {
+        this.entries = ImmutableList.copyOf(entries);
+        this.brandPageNames = ImmutableMap.copyOf(brandPageNames);
+        ImmutableMap.Builder<String, Entry> byTagName = ImmutableMap.builder();
+        ImmutableSortedSet.Builder<String> titles = ImmutableSortedSet.naturalOrder();
+        for (Entry entry : entries) {
+            byTagName.put(entry.tagName, entry);
+            titles.add(StringUtils.defaultString(entry.title));
+        }
+        this.entriesByTagName = byTagName.build();
+        this.sortedTitles = titles.build();
+    }
+
+    /**
+     * Gets the current snapshot of the catalog. The brand DAOs read the repository themselves without it.
+     *
+     * @param catalog the catalog, null if not available
+     * @return the snapshot, null if there is no catalog or the brands are not loaded yet
+     */
+    public static BrandSnapshot of(final BrandCatalog catalog) {
+        return catalog != null ? catalog.getSnapshot() : null;
+    }
+
+    /**
+     * Gets the sorted brand tag titles.
+     *
+     * @return the titles
+     */
+    public Set<String> getSortedTitles() {
+        return sortedTitles;
+    }
+
+    /**
+     * Gets all the brands with the data of their brand page.
+     *
+     * @return the brands
+     */
+    public List<Brand> getBrands() {
+        List<Brand> brands = Lists.newArrayListWithCapacity(entries.size());
+        for (Entry entry : entries) {
+            Brand brand = new Brand();
+            brand.setId(entry.tagName.replaceAll(HYPHEN, UNDERSCORE).toUpperCase());
+            brand.setName(StringUtils.defaultString(entry.title, entry.tagName));
+            brand.setDescription(entry.description);
+            brand.setImage(entry.image);
+            brands.add(brand);
+        }
+        return brands;
+    }
+
+    /**
+     * Gets the brands of the ids which have a brand tag.
+     *
+     * @param ids the brand ids
+     * @param favouriteBrands the ids of the subscribed brands
+     * @return the brands
+     */
+    public List<Brand> getBrands(final String[] ids, final List<String> favouriteBrands) {
+        List<Brand> brands = Lists.newArrayList();
+        for (String id : ids) {
+            Entry entry = entriesByTagName.get(id.replaceAll(UNDERSCORE, HYPHEN));
+            if (entry != null) {
+                Brand brand = new Brand();
+                brand.setName(StringUtils.defaultString(entry.title, entry.tagName));
+                brand.setId(id);
+                brand.setSubscribed(favouriteBrands.contains(id));
+                brands.add(brand);
+            }
+        }
+        return brands;
+    }
+
+    /**
+     * Gets the name of the brand page of the brand.
+     *
+     * @param brand the brand, matched ignoring case
+     * @return the brand page name, null if the brand has no brand page
+     */
+    public String getBrandPageName(final String brand) {
+        return StringUtils.isBlank(brand) ? null : brandPageNames.get(brand.toLowerCase(Locale.ENGLISH));
+    }
+
+    /**
+     * Gets the number of brands.
+     *
+     * @return the size
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Creates a builder of a new snapshot.
+     *
+     * @return the builder
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Collects the brands of a new snapshot.
+     */
+    public static final class Builder {
+
+        private final List<Entry> entries = Lists.newArrayList();
+        private final Map<String, String> brandPageNames = Maps.newHashMap();
+
+        private Builder() {
+        }
+
+        /**
+         * Adds a brand.
+         *
+         * @param tagName the name of the brand tag
+         * @param title the tag title, may be null
+         * @param description the brand page description, null without brand page
+         * @param image the brand page Scene7 image, null without brand page
+         * @return this builder
+         */
+        public Builder add(final String tagName, final String title, final String description, final String image) {
+            entries.add(new Entry(tagName, title, description, image));
+            return this;
+        }
+
+        /**
+         * Adds a brand page. The first brand page of a brand wins.
+         *
+         * @param brand the brand of the page, matched ignoring case
+         * @param pageName the name of the brand page
+         * @return this builder
+         */
+        public Builder addBrandPage(final String brand, final String pageName) {
+            String key = brand.toLowerCase(Locale.ENGLISH);
+            if (!brandPageNames.containsKey(key)) {
+                brandPageNames.put(key, pageName);
+            }
+            return this;
+        }
+
+        /**
+         * Builds the snapshot.
+         *
+         * @return the snapshot
+         */
+        public BrandSnapshot build() {
+            return new BrandSnapshot(entries, brandPageNames);
+        }
+    }
+
+    private static final class Entry {
+
+        private final String tagName;
+        private final String title;
+        private final String description;
+        private final String image;
+
+        private Entry(final String tagName, final String title, final String description, final String image) {
+            this.tagName = tagName;
+            this.title = title;
+            this.description = description;
+            this.image = image;
+        }
+    }
+}
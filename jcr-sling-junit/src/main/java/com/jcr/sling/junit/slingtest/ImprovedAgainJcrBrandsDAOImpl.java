@@ -7,6 +7,8 @@ import com.jcr.sling.junit.slingtest.holders.ResolverHolder;
 import org.apache.commons.lang.StringUtils;
 import org.apache.felix.scr.annotations.Component;
 import org.apache.felix.scr.annotations.Reference;
+import org.apache.felix.scr.annotations.ReferenceCardinality;
+import org.apache.felix.scr.annotations.ReferencePolicy;
 import org.apache.felix.scr.annotations.Service;
 import org.apache.sling.api.resource.NonExistingResource;
 import org.apache.sling.api.resource.Resource;
@@ -34,8 +36,15 @@ public class ImprovedAgainJcrBrandsDAOImpl implements BrandsDAO {
     @Reference
     private ResourceResolverFactory resourceResolverFactory;
 
+    @Reference(cardinality = ReferenceCardinality.OPTIONAL_UNARY, policy = ReferencePolicy.DYNAMIC)
+    private volatile BrandCatalog brandCatalog;
+
     @Override
     public Set<String> getSortedBrandTagsTitles() {
+        final BrandSnapshot snapshot = BrandSnapshot.of(brandCatalog);
+        if (snapshot != null) {
+            return new TreeSet<>(snapshot.getSortedTitles());
+        }
         Set<String> result = new TreeSet<>();
 
         try (ResolverHolder resolverHolder = new ResolverHolder(resourceResolverFactory)) {
@@ -68,6 +77,10 @@ public class ImprovedAgainJcrBrandsDAOImpl implements BrandsDAO {
 
     @Override
     public List<Brand> getAllBrands(final String[] filterArray, final List<String> favouriteBrands) {
+        final BrandSnapshot snapshot = BrandSnapshot.of(brandCatalog);
+        if (snapshot != null) {
+            return snapshot.getBrands(filterArray, favouriteBrands);
+        }
         List<Brand> result = Lists.newArrayList();
 
         try (ResolverHolder resolverHolder = new ResolverHolder(resourceResolverFactory)) {
@@ -88,6 +101,10 @@ public class ImprovedAgainJcrBrandsDAOImpl implements BrandsDAO {
 
     @Override
     public List<Brand> getBrands() throws RepositoryException {
+        final BrandSnapshot snapshot = BrandSnapshot.of(brandCatalog);
+        if (snapshot != null) {
+            return snapshot.getBrands();
+        }
         List<Brand> result = Lists.newArrayList();
         try (ResolverHolder resolverHolder = new ResolverHolder(resourceResolverFactory)) {
             final Resource brandsResource = resolverHolder.getResolver().resolve(PATH_TO_BRAND_TAGS);
@@ -0,0 +1,203 @@
+package com.jcr.sling.junit.slingtest;
+
+import com.day.cq.commons.jcr.JcrConstants;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.jcr.sling.junit.slingtest.constants.FglPathConstants;
+import com.jcr.sling.junit.slingtest.holders.SessionHolder;
+import org.apache.commons.lang.StringUtils;
+import org.apache.felix.scr.annotations.Component;
+import org.apache.felix.scr.annotations.Property;
+import org.apache.felix.scr.annotations.Reference;
+import org.apache.felix.scr.annotations.Service;
+import org.apache.jackrabbit.commons.JcrUtils;
+import org.apache.sling.commons.osgi.PropertiesUtil;
+import org.apache.sling.jcr.api.SlingRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.jcr.Node;
+import javax.jcr.NodeIterator;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+import javax.jcr.observation.Event;
+import javax.jcr.observation.EventIterator;
+import javax.jcr.observation.EventListener;
+import javax.jcr.observation.ObservationManager;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Loads the brand snapshot on activation and builds a new one when a brand tag or a brand page changes.
+ * The snapshot also maps the brands to their brand pages by the {@code brand} tag of the pages.
+ * Changes arriving close together are folded into one rebuild, the new snapshot replaces the previous
+ * one at once.
+ */
+@Component(immediate = true)
+@Service(BrandCatalog.class)
+public class JcrBrandCatalogImpl implements BrandCatalog {
+
+    private static final Logger LOG = LoggerFactory.getLogger(JcrBrandCatalogImpl.class);
+
+    private static final String BRAND_PAGES_PATH = "/content/sportchek/en/brands";
+    private static final String BRAND_INFO_NODE = BRAND_PAGES_PATH + "/%s/jcr:content/brandLogo";
+    private static final String DESCRIPTION = "description";
+    private static final String SCENE7_IMAGE_REFERENCE = "s7_imageReference";
+    private static final String PAGE_BRAND_PROPERTY = "jcr:content/brand";
+    private static final String BRAND_PROP_PREFIX = "sportchek:brands/";
+    private static final int EVENT_TYPES = Event.NODE_ADDED | Event.NODE_REMOVED | Event.PROPERTY_ADDED
+            | Event.PROPERTY_CHANGED | Event.PROPERTY_REMOVED;
+
+    private static final int DEFAULT_REBUILD_DELAY = 1000;
+    @Property(label = "Rebuild delay", description = "For how many milliseconds the brand changes are collected before the brands are reloaded", intValue = DEFAULT_REBUILD_DELAY)
+    private static final String REBUILD_DELAY = "rebuild.delay";
+
+    @Reference
+    private SlingRepository repository;
+
+    // an observation manager keeps one registration per listener, so the tags and the pages need one each
+    private final EventListener tagListener = new ChangeListener();
+    private final EventListener pageListener = new ChangeListener();
+    private final AtomicBoolean rebuildScheduled = new AtomicBoolean();
+    private volatile BrandSnapshot snapshot;
+    private volatile ScheduledExecutorService rebuilder;
+    private volatile long rebuildDelay = DEFAULT_REBUILD_DELAY;
+    private Session observationSession;
+
+    protected void activate(final Map<String, Object> properties) throws RepositoryException {
+        rebuildDelay = PropertiesUtil.toInteger(properties.get(REBUILD_DELAY), DEFAULT_REBUILD_DELAY);
+        rebuilder = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder().setNameFormat("brand-catalog-rebuilder").setDaemon(true).build());
+
+        observationSession = repository.loginAdministrative(null);
+        ObservationManager observationManager = observationSession.getWorkspace().getObservationManager();
+        observationManager.addEventListener(tagListener, EVENT_TYPES, FglPathConstants.BRAND_PATH_PREFIX, true,
+                null, null, false);
+        observationManager.addEventListener(pageListener, EVENT_TYPES, BRAND_PAGES_PATH, true, null, null, false);
+
+        rebuild();
+    }
+
+    protected void deactivate() {
+        if (observationSession != null) {
+            try {
+                ObservationManager observationManager = observationSession.getWorkspace().getObservationManager();
+                observationManager.removeEventListener(tagListener);
+                observationManager.removeEventListener(pageListener);
+            } catch (RepositoryException e) {
+                LOG.warn("Can not remove the brand catalog listener: ", e);
+            }
+            observationSession.logout();
+            observationSession = null;
+        }
+        ScheduledExecutorService executor = rebuilder;
+        rebuilder = null;
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+        snapshot = null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public BrandSnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    /**
+     * Schedules a rebuild, unless one is already waiting.
+     */
+    private void scheduleRebuild() {
+        ScheduledExecutorService executor = rebuilder;
+        if (executor == null || !rebuildScheduled.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            executor.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    rebuildScheduled.set(false);
+                    rebuild();
+                }
+            }, rebuildDelay, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            LOG.debug("Brand catalog is stopped");
+        }
+    }
+
+    private void rebuild() {
+        try (SessionHolder sessionHolder = new SessionHolder(repository)) {
+            Session session = sessionHolder.getSession();
+            BrandSnapshot newSnapshot = load(session);
+            snapshot = newSnapshot;
+            LOG.debug("Brand catalog of {} brands loaded", newSnapshot.size());
+        } catch (RepositoryException e) {
+            LOG.error("Failed to read brand list from repository:  ", e);
+        }
+    }
+
+    private static BrandSnapshot load(final Session session) throws RepositoryException {
+        BrandSnapshot.Builder builder = BrandSnapshot.builder();
+        if (session.nodeExists(FglPathConstants.BRAND_PATH_PREFIX)) {
+            loadBrands(session, builder);
+        }
+        if (session.nodeExists(BRAND_PAGES_PATH)) {
+            for (NodeIterator pageNodes = session.getNode(BRAND_PAGES_PATH).getNodes(); pageNodes.hasNext(); ) {
+                Node pageNode = pageNodes.nextNode();
+                String brand = getPageBrand(pageNode);
+                if (brand != null) {
+                    builder.addBrandPage(brand, pageNode.getName());
+                }
+            }
+        }
+        return builder.build();
+    }
+
+    private static void loadBrands(final Session session, final BrandSnapshot.Builder builder)
+            throws RepositoryException {
+        for (NodeIterator brandNodes = session.getNode(FglPathConstants.BRAND_PATH_PREFIX).getNodes();
+             brandNodes.hasNext(); ) {
+            Node brandNode = brandNodes.nextNode();
+            String title = JcrUtils.getStringProperty(brandNode, JcrConstants.JCR_TITLE, null);
+            String brandLogoPath = String.format(BRAND_INFO_NODE, brandNode.getName().toLowerCase());
+            if (session.nodeExists(brandLogoPath)) {
+                Node brandLogoNode = session.getNode(brandLogoPath);
+                builder.add(brandNode.getName(), title,
+                        JcrUtils.getStringProperty(brandLogoNode, DESCRIPTION, StringUtils.EMPTY),
+                        JcrUtils.getStringProperty(brandLogoNode, SCENE7_IMAGE_REFERENCE, StringUtils.EMPTY));
+            } else {
+                builder.add(brandNode.getName(), title, null, null);
+            }
+        }
+    }
+
+    private static String getPageBrand(final Node pageNode) throws RepositoryException {
+        if (!pageNode.hasProperty(PAGE_BRAND_PROPERTY)) {
+            return null;
+        }
+        javax.jcr.Property brandProperty = pageNode.getProperty(PAGE_BRAND_PROPERTY);
+        String brand = brandProperty.isMultiple()
+                ? brandProperty.getValues().length > 0 ? brandProperty.getValues()[0].getString() : null
+                : brandProperty.getString();
+        if (StringUtils.isBlank(brand) || !brand.contains(BRAND_PROP_PREFIX)) {
+            return null;
+        }
+        return brand.replace(BRAND_PROP_PREFIX, "");
+    }
+
+    /**
+     * Rebuilds the snapshot on any change of the observed subtree.
+     */
+    private final class ChangeListener implements EventListener {
+
+        @Override
+        public void onEvent(final EventIterator events) {
+            scheduleRebuild();
+        }
+    }
+}
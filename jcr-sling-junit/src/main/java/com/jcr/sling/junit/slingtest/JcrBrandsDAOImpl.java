@@ -10,9 +10,12 @@ import com.google.common.collect.Lists;
 import com.jcr.sling.junit.slingtest.constants.FglPathConstants;
 import com.jcr.sling.junit.slingtest.holders.ResolverHolder;
 import com.jcr.sling.junit.slingtest.holders.SessionHolder;
+import com.jcr.sling.junit.slingtest.holders.SessionPool;
 import org.apache.commons.lang.StringUtils;
 import org.apache.felix.scr.annotations.Component;
 import org.apache.felix.scr.annotations.Reference;
+import org.apache.felix.scr.annotations.ReferenceCardinality;
+import org.apache.felix.scr.annotations.ReferencePolicy;
 import org.apache.felix.scr.annotations.Service;
 import org.apache.jackrabbit.commons.JcrUtils;
 import org.apache.sling.api.resource.NonExistingResource;
@@ -54,14 +57,24 @@ public class JcrBrandsDAOImpl implements BrandsDAO {
     @Reference
     private ResourceResolverFactory resourceResolverFactory;
 
+    @Reference(cardinality = ReferenceCardinality.OPTIONAL_UNARY, policy = ReferencePolicy.DYNAMIC)
+    private volatile BrandCatalog brandCatalog;
+
+    @Reference(cardinality = ReferenceCardinality.OPTIONAL_UNARY, policy = ReferencePolicy.DYNAMIC)
+    private volatile SessionPool sessionPool;
+
     /**
      * {@inheritDoc}
      */
     @Override
     public Set<String> getSortedBrandTagsTitles() {
+        final BrandSnapshot snapshot = BrandSnapshot.of(brandCatalog);
+        if (snapshot != null) {
+            return new TreeSet<>(snapshot.getSortedTitles());
+        }
         Set<String> result = new TreeSet<>();
 
-        try (SessionHolder sessionHolder = new SessionHolder(repository)) {
+        try (SessionHolder sessionHolder = openSession()) {
             Session session = sessionHolder.getSession();
             Node brandTagsRootNode = session.getNode(PATH_TO_BRAND_TAGS);
             NodeIterator nodeIterator = brandTagsRootNode.getNodes();
@@ -94,9 +107,13 @@ public class JcrBrandsDAOImpl implements BrandsDAO {
      */
     @Override
     public List<Brand> getAllBrands(final String[] filterArray, final List<String> favouriteBrands) {
+        final BrandSnapshot snapshot = BrandSnapshot.of(brandCatalog);
+        if (snapshot != null) {
+            return snapshot.getBrands(filterArray, favouriteBrands);
+        }
         List<Brand> result = Lists.newArrayList();
 
-        try (ResolverHolder resolverHolder = new ResolverHolder(resourceResolverFactory)) {
+        try (ResolverHolder resolverHolder = openResolver()) {
             final TagManager tagManager = resolverHolder.getResolver().adaptTo(TagManager.class);
             for (String id : filterArray) {
                 final String tagName = PATH_TO_BRAND_TAGS + "/" + id.replaceAll(UNDERSCORE, HYPHEN);
@@ -108,6 +125,8 @@ public class JcrBrandsDAOImpl implements BrandsDAO {
                     result.add(brand);
                 }
             }
+        } catch (RepositoryException e) {
+            LOG.error("Failed to read brand tags from repository: ", e);
         }
         return result;
     }
@@ -117,8 +136,12 @@ public class JcrBrandsDAOImpl implements BrandsDAO {
      */
     @Override
     public List<Brand> getBrands() throws RepositoryException {
+        final BrandSnapshot snapshot = BrandSnapshot.of(brandCatalog);
+        if (snapshot != null) {
+            return snapshot.getBrands();
+        }
         List<Brand> result = Lists.newArrayList();
-        try (ResolverHolder resolverHolder = new ResolverHolder(resourceResolverFactory)) {
+        try (ResolverHolder resolverHolder = openResolver()) {
             final Node brandsNode = resolverHolder.getResolver().resolve(PATH_TO_BRAND_TAGS).adaptTo(Node.class);
             final Iterable<Node> brandsList = JcrUtils.getChildNodes(brandsNode);
             for (Node brandNode : brandsList) {
@@ -136,6 +159,17 @@ public class JcrBrandsDAOImpl implements BrandsDAO {
         return result;
     }
 
+    private SessionHolder openSession() throws RepositoryException {
+        final SessionPool pool = sessionPool;
+        return pool != null ? new SessionHolder(pool) : new SessionHolder(repository);
+    }
+
+    private ResolverHolder openResolver() throws RepositoryException {
+        final SessionPool pool = sessionPool;
+        return pool != null ? new ResolverHolder(resourceResolverFactory, pool)
+                : new ResolverHolder(resourceResolverFactory);
+    }
+
     private void populateBrandLogoInfo(final Brand brand, final String brandName, final ResourceResolver resolver)
             throws RepositoryException {
         final String brandLogoPath = String.format(BRAND_INFO_NODE, brandName);
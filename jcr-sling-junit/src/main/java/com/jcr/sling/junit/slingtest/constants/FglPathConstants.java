@@ -12,6 +12,7 @@ public final class FglPathConstants {
     public static final String BRAND_PATH_PREFIX = "/etc/tags/sportchek/brands";
     public static final String CATEGORIES_PATH_PREFIX = "/etc/tags/sportchek/categories";
     public static final String CONTENT_PATH_PREFIX = "/content/sportchek";
+    public static final String PRODUCT_IMAGES_PATH = "/content/dam/sportchek/product-images";
     public static final String TAGS_PREFIX = "/etc/tags/sportchek";
     public static final String SOURCE_SUB_NODE_NAME = "product";
     public static final String SOURCE_SUB_NODE_REL_PATH = JcrConstants.JCR_CONTENT + PATH_SEPARATOR
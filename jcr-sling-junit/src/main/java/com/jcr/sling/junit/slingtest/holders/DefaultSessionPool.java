@@ -0,0 +1,229 @@
+package com.jcr.sling.junit.slingtest.holders;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.felix.scr.annotations.Component;
+import org.apache.felix.scr.annotations.Property;
+import org.apache.felix.scr.annotations.Reference;
+import org.apache.felix.scr.annotations.Service;
+import org.apache.sling.commons.osgi.PropertiesUtil;
+import org.apache.sling.jcr.api.SlingRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+import javax.jcr.SimpleCredentials;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps a bounded number of sessions open and leases them to the DAOs, so that a DAO call does not pay for
+ * login and logout.
+ * <p>
+ * The pooled sessions are administrative sessions and keep the administrative rights by default. CQ 5.6 has no
+ * service users, so the rights can only be narrowed by configuring a pool user: the administrative session then
+ * impersonates that user, which should have read access only.
+ */
+@Component
+@Service(SessionPool.class)
+public class DefaultSessionPool implements SessionPool {
+
+    private static final Logger LOG = LoggerFactory.getLogger(DefaultSessionPool.class);
+
+    private static final int DEFAULT_POOL_SIZE = 8;
+    @Property(label = "Pool size", description = "Maximum number of sessions kept open by the pool", intValue = DEFAULT_POOL_SIZE)
+    private static final String POOL_SIZE = "pool.size";
+
+    private static final int DEFAULT_WAIT_TIMEOUT = 5000;
+    @Property(label = "Wait timeout", description = "For how many milliseconds a caller waits for a free session", intValue = DEFAULT_WAIT_TIMEOUT)
+    private static final String WAIT_TIMEOUT = "pool.wait.timeout";
+
+    @Property(label = "Pool user", description = "User impersonated by the pooled sessions, should have read access only. Empty leaves the pooled sessions with administrative rights", value = "")
+    private static final String POOL_USER = "pool.user";
+
+    @Reference
+    private SlingRepository repository;
+
+    private final BlockingQueue<Session> idle = new LinkedBlockingQueue<>();
+    private final AtomicInteger opened = new AtomicInteger();
+    private final AtomicLong totalWaitTime = new AtomicLong();
+    private final AtomicLong exhaustedCount = new AtomicLong();
+
+    private volatile Semaphore permits = new Semaphore(DEFAULT_POOL_SIZE, true);
+    private volatile int poolSize = DEFAULT_POOL_SIZE;
+    private volatile long waitTimeout = DEFAULT_WAIT_TIMEOUT;
+    private volatile String poolUser;
+    private volatile boolean stopped;
+
+    protected void activate(final Map<String, Object> properties) {
+        poolSize = PropertiesUtil.toInteger(properties.get(POOL_SIZE), DEFAULT_POOL_SIZE);
+        waitTimeout = PropertiesUtil.toLong(properties.get(WAIT_TIMEOUT), DEFAULT_WAIT_TIMEOUT);
+        poolUser = StringUtils.trimToNull(PropertiesUtil.toString(properties.get(POOL_USER), null));
+        permits = new Semaphore(poolSize, true);
+        stopped = false;
+        if (poolUser == null) {
+            LOG.warn("No pool user configured, the pooled sessions keep administrative rights");
+        }
+    }
+
+    protected void deactivate() {
+        // the sessions leased at this point are logged out when they are returned
+        stopped = true;
+        Session session;
+        while ((session = idle.poll()) != null) {
+            logout(session);
+        }
+    }
+
+    @Override
+    public Lease lease() throws RepositoryException {
+        if (stopped) {
+            throw new RepositoryException("Session pool is stopped");
+        }
+        final Semaphore currentPermits = permits;
+        acquire(currentPermits);
+        try {
+            final Session session = checkout();
+            return new PooledLease(session, currentPermits);
+        } catch (RepositoryException | RuntimeException e) {
+            currentPermits.release();
+            throw e;
+        }
+    }
+
+    @Override
+    public int getPoolSize() {
+        return opened.get();
+    }
+
+    @Override
+    public int getMaxPoolSize() {
+        return poolSize;
+    }
+
+    @Override
+    public int getLeasedCount() {
+        return poolSize - permits.availablePermits();
+    }
+
+    @Override
+    public long getTotalWaitTime() {
+        return totalWaitTime.get();
+    }
+
+    @Override
+    public long getExhaustedCount() {
+        return exhaustedCount.get();
+    }
+
+    private void acquire(final Semaphore currentPermits) throws RepositoryException {
+        final long start = System.nanoTime();
+        boolean acquired;
+        try {
+            acquired = currentPermits.tryAcquire(waitTimeout, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            acquired = false;
+        } finally {
+            totalWaitTime.addAndGet(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        }
+        if (!acquired) {
+            exhaustedCount.incrementAndGet();
+            throw new RepositoryException("No session became available in " + waitTimeout + " ms");
+        }
+    }
+
+    private Session checkout() throws RepositoryException {
+        Session session;
+        while ((session = idle.poll()) != null) {
+            if (!session.isLive()) {
+                opened.decrementAndGet();
+                continue;
+            }
+            try {
+                session.refresh(false);
+                return session;
+            } catch (RepositoryException e) {
+                LOG.warn("Unable to refresh idle session, dropping it", e);
+                logout(session);
+            }
+        }
+        session = login();
+        opened.incrementAndGet();
+        return session;
+    }
+
+    private Session login() throws RepositoryException {
+        final Session adminSession = repository.loginAdministrative(null);
+        final String user = poolUser;
+        if (user == null) {
+            return adminSession;
+        }
+        try {
+            return adminSession.impersonate(new SimpleCredentials(user, new char[0]));
+        } finally {
+            adminSession.logout();
+        }
+    }
+
+    private void checkin(final Session session) {
+        if (!session.isLive()) {
+            opened.decrementAndGet();
+            return;
+        }
+        if (stopped) {
+            logout(session);
+            return;
+        }
+        try {
+            session.refresh(false);
+            idle.offer(session);
+        } catch (RepositoryException e) {
+            LOG.warn("Unable to refresh returned session, dropping it", e);
+            logout(session);
+            return;
+        }
+        // the pool could be stopped while the session was returned, after draining the idle sessions
+        if (stopped && idle.remove(session)) {
+            logout(session);
+        }
+    }
+
+    private void logout(final Session session) {
+        opened.decrementAndGet();
+        if (session.isLive()) {
+            session.logout();
+        }
+    }
+
+    private final class PooledLease implements Lease {
+
+        private final Session session;
+        private final Semaphore leasePermits;
+        private boolean closed;
+
+        private PooledLease(final Session session, final Semaphore leasePermits) {
+            this.session = session;
+            this.leasePermits = leasePermits;
+        }
+
+        @Override
+        public Session getSession() {
+            return session;
+        }
+
+        @Override
+        public void close() {
+            if (!closed) {
+                closed = true;
+                checkin(session);
+                leasePermits.release();
+            }
+        }
+    }
+}
@@ -1 +1 @@
-package com.jcr.sling.junit.slingtest.holders;import org.apache.sling.api.resource.LoginException;import org.apache.sling.api.resource.ResourceResolver;import org.apache.sling.api.resource.ResourceResolverFactory;import org.slf4j.Logger;import org.slf4j.LoggerFactory;public class ResolverHolder implements AutoCloseable {    private static final Logger LOG = LoggerFactory.getLogger(ResolverHolder.class);    private ResourceResolver resolver;    public ResolverHolder(final ResourceResolverFactory factory) {        try {            this.resolver = factory.getAdministrativeResourceResolver(null);        } catch (LoginException ex) {            LOG.error("Fail on getting resource resolver", ex);        }    }    public ResourceResolver getResolver() {        return resolver;    }    @Override    public void close() {        if ((resolver != null)) {            resolver.close();        }    }}
\ No newline at end of file
+package com.jcr.sling.junit.slingtest.holders;import org.apache.sling.api.resource.LoginException;import org.apache.sling.api.resource.ResourceResolver;import org.apache.sling.api.resource.ResourceResolverFactory;import org.apache.sling.jcr.resource.JcrResourceConstants;import org.slf4j.Logger;import org.slf4j.LoggerFactory;import javax.jcr.RepositoryException;import java.util.Collections;public class ResolverHolder implements AutoCloseable {    private static final Logger LOG = LoggerFactory.getLogger(ResolverHolder.class);    private ResourceResolver resolver;    private SessionPool.Lease lease;    public ResolverHolder(final ResourceResolverFactory factory) {        try {            this.resolver = factory.getAdministrativeResourceResolver(null);        } catch (LoginException ex) {            LOG.error("Fail on getting resource resolver", ex);        }    }    /**     * Opens a resolver over a session leased from the pool; the lease is returned when no resolver can be opened.     *     * @throws RepositoryException when no session can be leased or no resolver can be opened over it     */    public ResolverHolder(final ResourceResolverFactory factory, final SessionPool pool) throws RepositoryException {        this.lease = pool.lease();        try {            this.resolver = factory.getResourceResolver(Collections.<String, Object>singletonMap(                    JcrResourceConstants.AUTHENTICATION_INFO_SESSION, lease.getSession()));        } catch (LoginException ex) {            lease.close();            throw new RepositoryException("Fail on getting resource resolver over pooled session", ex);        }    }    public ResourceResolver getResolver() {        return resolver;    }    @Override    public void close() {        if ((resolver != null)) {            resolver.close();        }        if (lease != null) {            lease.close();        }    }}
\ No newline at end of file
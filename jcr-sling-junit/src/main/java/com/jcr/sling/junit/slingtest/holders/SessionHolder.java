@@ -12,6 +12,7 @@ public class SessionHolder implements AutoCloseable {
     private static final Logger LOG = LoggerFactory.getLogger(SessionHolder.class);
 
     private Session session;
+    private SessionPool.Lease lease;
 
     public SessionHolder(final SlingRepository repository) {
         try {
@@ -21,6 +22,16 @@ public class SessionHolder implements AutoCloseable {
         }
     }
 
+    /**
+     * Leases a session from the pool; unlike the administrative login, a failed lease is not swallowed.
+     *
+     * @throws RepositoryException when no session can be leased, e.g. the pool stays exhausted
+     */
+    public SessionHolder(final SessionPool pool) throws RepositoryException {
+        this.lease = pool.lease();
+        this.session = lease.getSession();
+    }
+
     public SessionHolder(final SlingHttpServletRequest request) {
         this.session = request.getResourceResolver().adaptTo(Session.class);
     }
@@ -32,7 +43,9 @@ public class SessionHolder implements AutoCloseable {
 
     @Override
     public void close() {
-        if ((session != null) && (session.isLive())) {
+        if (lease != null) {
+            lease.close();
+        } else if ((session != null) && (session.isLive())) {
             session.logout();
         }
     }
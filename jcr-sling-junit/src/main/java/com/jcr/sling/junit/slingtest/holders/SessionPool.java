@@ -0,0 +1,72 @@
+package com.jcr.sling.junit.slingtest.holders;
+
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+
+/**
+ * Bounded pool of long-lived sessions for reading. The sessions may have administrative rights, so nothing stops
+ * a write: the callers must not save changes with a leased session, the session of the next lease could then be
+ * shared with other content.
+ */
+public interface SessionPool {
+
+    /**
+     * Leases a session from the pool. The session is refreshed before it is handed out.
+     * The lease must be closed to return the session to the pool.
+     *
+     * @return the lease
+     * @throws RepositoryException if no session becomes available in time or login fails
+     */
+    Lease lease() throws RepositoryException;
+
+    /**
+     * Gets the number of sessions currently opened by the pool.
+     *
+     * @return the pool size
+     */
+    int getPoolSize();
+
+    /**
+     * Gets the maximum number of sessions the pool opens.
+     *
+     * @return the maximum pool size
+     */
+    int getMaxPoolSize();
+
+    /**
+     * Gets the number of sessions currently leased.
+     *
+     * @return the leased sessions count
+     */
+    int getLeasedCount();
+
+    /**
+     * Gets the total time spent waiting for a free session.
+     *
+     * @return the wait time in milliseconds
+     */
+    long getTotalWaitTime();
+
+    /**
+     * Gets how many times no session became available in time.
+     *
+     * @return the exhaustion count
+     */
+    long getExhaustedCount();
+
+    /**
+     * Leased session, returned to the pool on close.
+     */
+    interface Lease extends AutoCloseable {
+
+        /**
+         * Gets the leased session.
+         *
+         * @return the session
+         */
+        Session getSession();
+
+        @Override
+        void close();
+    }
+}
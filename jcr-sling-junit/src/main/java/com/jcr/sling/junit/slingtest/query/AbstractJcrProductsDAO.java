@@ -0,0 +1,1036 @@
+package com.jcr.sling.junit.slingtest.query;
+
+import com.day.cq.commons.jcr.JcrConstants;
+import com.day.cq.wcm.api.NameConstants;
+import com.google.common.base.Joiner;
+import com.google.common.base.Objects;
+import com.google.common.base.Optional;
+import com.google.common.base.Predicate;
+import com.google.common.base.Splitter;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.FluentIterable;
+import com.google.common.collect.HashMultimap;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Iterators;
+import com.google.common.collect.LinkedHashMultimap;
+import com.google.common.collect.ListMultimap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Multimap;
+import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.jcr.sling.junit.slingtest.constants.FglPathConstants;
+import com.jcr.sling.junit.slingtest.holders.SessionHolder;
+import com.jcr.sling.junit.slingtest.holders.SessionPool;
+import com.jcr.sling.junit.slingtest.query.add.FglJcrProductProperties;
+import com.jcr.sling.junit.slingtest.query.add.Product;
+import com.jcr.sling.junit.slingtest.query.add.ProductSearchResult;
+import com.jcr.sling.junit.slingtest.query.add.ProductsSelector;
+import com.jcr.sling.junit.slingtest.query.add.SeekToken;
+import com.jcr.sling.junit.slingtest.query.add.Sql2QueryBuilder;
+import org.apache.commons.lang.StringUtils;
+import org.apache.felix.scr.annotations.Component;
+import org.apache.felix.scr.annotations.Property;
+import org.apache.felix.scr.annotations.Reference;
+import org.apache.felix.scr.annotations.ReferenceCardinality;
+import org.apache.felix.scr.annotations.ReferencePolicy;
+import org.apache.jackrabbit.commons.JcrUtils;
+import org.apache.jackrabbit.util.Text;
+import org.apache.sling.commons.osgi.PropertiesUtil;
+import org.apache.sling.jcr.api.SlingRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.jcr.Node;
+import javax.jcr.NodeIterator;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+import javax.jcr.Value;
+import javax.jcr.query.Query;
+import javax.jcr.query.QueryManager;
+import javax.jcr.query.QueryResult;
+import javax.jcr.query.Row;
+import javax.jcr.query.RowIterator;
+import java.io.File;
+import java.util.Calendar;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Repository search of the products DAOs: the SQL2 searches, keyset pagination, counting with facets,
+ * field projection, streaming and the partitioned search by statuses. {@link JcrProductsDAOImpl} and
+ * {@link ImprovedJcrProductsDAOImpl} register it as components.
+ */
+@Component(componentAbstract = true)
+public abstract class AbstractJcrProductsDAO implements ProductsDAO {
+
+    private static final Logger LOG = LoggerFactory.getLogger(AbstractJcrProductsDAO.class);
+    private static final String ANY_ENDING = "/%";
+    private static final String PATH_PREDICATE = "path";
+    private static final String P_OFFSET = "p.offset";
+    private static final String P_LIMIT = "p.limit";
+    private static final String P_AFTER = "p.after";
+    private static final String P_FACETS = "p.facets";
+    private static final String MODIFIED_DATE_RANGE_LOWER_BOUND = "0_daterange.lowerBound";
+    private static final String MODIFIED_DATE_RANGE_UPPER_BOUND = "0_daterange.upperBound";
+    private static final String IDENTIFIER = "pmmId";
+    private static final String PMM_TITLE_PREDICATE = "pmmTitle";
+    private static final String FULL_TEXT = "fulltext";
+    private static final String P_SORT = "p.sort";
+    protected static final String FULFILLER_NAME_PREDICATE = "fulfillerName";
+    private static final String P_DIR = "p.dir";
+    private static final String CREATION_DATE_LOWER_BOUND_PREDICATE = "1_daterangecustom.lowerBound";
+    private static final String CREATION_DATE_UPPER_BOUND_PREDICATE = "1_daterangecustom.upperBound";
+    private static final String SELLABLE_PREDICATE = "sellable";
+    private static final String STATUS_PREDICATE = "publishStatus";
+    private static final String TAGS_PREDICATE = "tags";
+    private static final Pattern VENDORS_PROPERTIES_PATTERN = Pattern.compile("2_group\\.property\\.\\d+_value");
+    private static final Pattern BRANDS_PROPERTIES_PATTERN = Pattern.compile("3_group\\.property\\.\\d+_value");
+
+    private static final String IMAGE_SEARCH_QUERY_BEGINNING = "select * from dam:Asset where jcr:path like '/content/dam/sportchek/%' and contains(*, '";
+    private static final String IMAGE_SEARCH_QUERY_END = "') and (not contains(*, '_s') or not contains(*, '_S'))";
+    private static final String SWATCH_IMAGE_SEARCH_QUERY_END = "') and (contains(*, '_s') or contains(*, '_S'))";
+    private static final String ALL_IMAGE_SEARCH_QUERY = "select * from [dam:Asset] as asset where ISCHILDNODE('/content/dam/sportchek/product-images/%s') AND CONTAINS(asset.*, '%s') ";
+    private static final String PRODUCT_IMAGES_PATH = FglPathConstants.PRODUCT_IMAGES_PATH
+            + FglPathConstants.PATH_SEPARATOR;
+    private static final String IMAGE_BATCH_SEARCH_QUERY = "select * from [dam:Asset] as asset where ";
+    private static final String IMAGE_FOLDER_CONSTRAINT = "ISCHILDNODE(asset, '/content/dam/sportchek/product-images/%s')";
+    private static final String DAM_ASSET = "dam:Asset";
+    private static final String SWATCH_IMAGE_MARKER = "_s";
+    private static final int IMAGE_BATCH_SIZE = 50;
+    private static final String CATEGORY_TAG = "sportchek:categories";
+
+    private static final int DEFAULT_MAX_COUNT = 10000;
+    @Property(label = "Max count", description = "Search results are counted up to this number, larger totals are reported as estimated", intValue = DEFAULT_MAX_COUNT)
+    private static final String MAX_COUNT = "count.max";
+
+    private static final int DEFAULT_COUNT_TTL = 60;
+    @Property(label = "Count TTL", description = "For how many seconds the total of a search is cached", intValue = DEFAULT_COUNT_TTL)
+    private static final String COUNT_TTL = "count.ttl";
+
+    private static final int DEFAULT_QUERY_CACHE_SIZE = 100;
+    @Property(label = "Query cache size", description = "How many parsed search queries are kept per pooled session", intValue = DEFAULT_QUERY_CACHE_SIZE)
+    private static final String QUERY_CACHE_SIZE = "query.cache.size";
+
+    private static final int DEFAULT_PARTITION_THREADS = 0;
+    @Property(label = "Partition threads", description = "Products by statuses are searched per status and source folder on this many threads, 0 searches them with one query. Limited to the session pool size", intValue = DEFAULT_PARTITION_THREADS)
+    private static final String PARTITION_THREADS = "partition.threads";
+
+    private static final int COUNT_CACHE_SIZE = 1000;
+    private static final int STREAM_CHUNK_SIZE = 100;
+
+    private static final Comparator<Product> BY_EXT_ID = new Comparator<Product>() {
+        @Override
+        public int compare(final Product first, final Product second) {
+            return first.getExtId().compareTo(second.getExtId());
+        }
+    };
+    // parsed queries are reused, so a limit has to be set on every execution
+    private static final int NO_LIMIT = Integer.MAX_VALUE;
+
+    @Reference
+    private SlingRepository repository;
+
+    @Reference
+    private UsersDao usersDao;
+
+    @Reference(cardinality = ReferenceCardinality.OPTIONAL_UNARY, policy = ReferencePolicy.DYNAMIC)
+    private volatile SessionPool sessionPool;
+
+    @Reference(cardinality = ReferenceCardinality.OPTIONAL_UNARY, policy = ReferencePolicy.DYNAMIC)
+    private volatile ProductImageResolver imageResolver;
+
+    private volatile int maxCount = DEFAULT_MAX_COUNT;
+    private volatile Cache<List<Object>, SearchTotals> totals = createTotalsCache(DEFAULT_COUNT_TTL);
+    private volatile PreparedQueryCache preparedQueries = new PreparedQueryCache(DEFAULT_QUERY_CACHE_SIZE);
+    private volatile ExecutorService partitionExecutor;
+
+    protected void activate(final Map<String, Object> properties) {
+        maxCount = PropertiesUtil.toInteger(properties.get(MAX_COUNT), DEFAULT_MAX_COUNT);
+        totals = createTotalsCache(PropertiesUtil.toInteger(properties.get(COUNT_TTL), DEFAULT_COUNT_TTL));
+        preparedQueries = new PreparedQueryCache(PropertiesUtil.toInteger(properties.get(QUERY_CACHE_SIZE),
+                DEFAULT_QUERY_CACHE_SIZE));
+
+        shutdownPartitionExecutor();
+        int partitionThreads = PropertiesUtil.toInteger(properties.get(PARTITION_THREADS), DEFAULT_PARTITION_THREADS);
+        final SessionPool pool = sessionPool;
+        if (pool != null && partitionThreads > pool.getMaxPoolSize()) {
+            // every partition leases a session, more threads would only wait for one
+            LOG.warn("Partition threads limited to the session pool size {}", pool.getMaxPoolSize());
+            partitionThreads = pool.getMaxPoolSize();
+        }
+        if (partitionThreads > 0) {
+            partitionExecutor = Executors.newFixedThreadPool(partitionThreads,
+                    new ThreadFactoryBuilder().setNameFormat("product-search-%d").setDaemon(true).build());
+        }
+    }
+
+    protected void deactivate() {
+        shutdownPartitionExecutor();
+    }
+
+    private void shutdownPartitionExecutor() {
+        final ExecutorService executor = partitionExecutor;
+        partitionExecutor = null;
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ProductSearchResult findProducts(final ProductsSelector selector) {
+        Optional<SeekToken> after = SeekToken.parse(selector.getAfter());
+        Sql2QueryBuilder query = buildSql2SearchQuery(selector, after);
+        long offset = after.isPresent() ? 0 : selector.getStart();
+        int limit = (int) selector.getLimit();
+
+        return searchProducts(query, offset, limit, selector.getSortAttribute(), after.isPresent(),
+                selector.getFields(), false);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @param searchCriteria
+     */
+    @Override
+    public ProductSearchResult findProducts(final Multimap<String, String> searchCriteria) {
+        return findProducts(searchCriteria, Collections.<String>emptySet());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ProductSearchResult findProducts(final Multimap<String, String> searchCriteria, final Set<String> fields) {
+        String sortProperty = Iterables.getFirst(searchCriteria.get(P_SORT), null);
+        // keyset pagination is possible only when the results are sorted by a property
+        Optional<SeekToken> after = sortProperty == null ? Optional.<SeekToken>absent()
+                : SeekToken.parse(Iterables.getFirst(searchCriteria.get(P_AFTER), null));
+        Sql2QueryBuilder query = buildSql2SearchQuery(searchCriteria, after);
+        int limit = Integer.valueOf(Iterables.getFirst(searchCriteria.get(P_LIMIT), "0"));
+        long offset = after.isPresent() ? 0 : Long.valueOf(Iterables.getFirst(searchCriteria.get(P_OFFSET), "0"));
+        boolean facets = Boolean.parseBoolean(Iterables.getFirst(searchCriteria.get(P_FACETS), null));
+
+        return searchProducts(query, offset, limit, sortProperty, after.isPresent(), fields, facets);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ProductSearchResult findProductsByStatuses(final Product.Status... statuses) {
+        final ExecutorService executor = partitionExecutor;
+        if (executor == null || statuses.length == 0) {
+            // not sorted, only the partitioned search orders the products by ext id, which it needs to merge them
+            return findProducts(createStatusesCriteria(statuses));
+        }
+
+        return findProductsByStatuses(executor, statuses);
+    }
+
+    /**
+     * Searches every status below every first level source node on its own session and merges the
+     * partitions by ext id. Together with the product nodes right under the source root, the partitions
+     * cover the same products as a single search below the source root.
+     */
+    private ProductSearchResult findProductsByStatuses(final ExecutorService executor,
+                                                       final Product.Status... statuses) {
+        ProductSearchResult searchResult = ProductSearchResult.empty();
+        List<Future<ProductSearchResult>> partitions = Lists.newArrayList();
+        try {
+            List<String> children = getSourceChildren();
+            for (Product.Status status : statuses) {
+                partitions.add(executor.submit(createPartitionSearch(
+                        Sql2QueryBuilder.createChildProductsQuery(FglPathConstants.SOURCE_JCR_PATH), status)));
+                for (String child : children) {
+                    partitions.add(executor.submit(createPartitionSearch(
+                            Sql2QueryBuilder.createProductSearchQuery(child), status)));
+                }
+            }
+
+            List<List<Product>> results = Lists.newArrayListWithCapacity(partitions.size());
+            for (Future<ProductSearchResult> partition : partitions) {
+                results.add(partition.get().getProducts());
+            }
+            List<Product> products = Lists.newArrayList(Iterables.mergeSorted(results, BY_EXT_ID));
+            searchResult = ProductSearchResult.of(products, products.size());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            LOG.error("Search by statuses was interrupted: ", e);
+        } catch (ExecutionException | RepositoryException e) {
+            LOG.error("Error on search by statuses: ", e);
+        } finally {
+            for (Future<ProductSearchResult> partition : partitions) {
+                partition.cancel(true);
+            }
+        }
+
+        return searchResult;
+    }
+
+    private Callable<ProductSearchResult> createPartitionSearch(final Sql2QueryBuilder builder,
+                                                                final Product.Status status) {
+        final Sql2QueryBuilder query = builder.withBindVariables();
+        query.addPublishStatusConstraint(Collections.singleton(String.valueOf(status.getStatusId())));
+        query.addSortingClause(Collections.singleton(FglJcrProductProperties.EXT_ID),
+                Collections.<String>emptySet());
+
+        return new Callable<ProductSearchResult>() {
+            @Override
+            public ProductSearchResult call() {
+                return searchProducts(query, 0, 0, FglJcrProductProperties.EXT_ID, false,
+                        Collections.<String>emptySet(), false);
+            }
+        };
+    }
+
+    private List<String> getSourceChildren() throws RepositoryException {
+        List<String> children = Lists.newArrayList();
+        try (SessionHolder sessionHolder = openSession()) {
+            Session session = sessionHolder.getSession();
+            if (session.nodeExists(FglPathConstants.SOURCE_JCR_PATH)) {
+                for (Node child : JcrUtils.getChildNodes(session.getNode(FglPathConstants.SOURCE_JCR_PATH))) {
+                    children.add(child.getPath());
+                }
+            }
+        }
+
+        return children;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ProductIterator streamProducts(final Multimap<String, String> searchCriteria) {
+        Sql2QueryBuilder query = buildSql2SearchQuery(searchCriteria, Optional.<SeekToken>absent());
+        int limit = Integer.valueOf(Iterables.getFirst(searchCriteria.get(P_LIMIT), "0"));
+        long offset = Long.valueOf(Iterables.getFirst(searchCriteria.get(P_OFFSET), "0"));
+
+        SessionHolder sessionHolder = null;
+        try {
+            sessionHolder = openSession();
+            Session session = sessionHolder.getSession();
+            RowIterator rows = executeQuery(session, query.getQuery(),
+                    query.getBindValues(session.getValueFactory()), offset, limit);
+
+            return new StreamingProductIterator(sessionHolder, limitToSize(rows, limit));
+        } catch (RepositoryException e) {
+            LOG.error("Error on access to node: ", e);
+            if (sessionHolder != null) {
+                sessionHolder.close();
+            }
+        }
+
+        return new StreamingProductIterator(null, Iterators.<Row>emptyIterator());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ProductIterator streamProductsByStatuses(final Product.Status... statuses) {
+        return streamProducts(createStatusesCriteria(statuses));
+    }
+
+    private static Multimap<String, String> createStatusesCriteria(final Product.Status... statuses) {
+        Multimap<String, String> criteria = HashMultimap.create();
+        for (Product.Status status : statuses) {
+            criteria.put(STATUS_PREDICATE, String.valueOf(status.getStatusId()));
+        }
+
+        return criteria;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Iterator<Node> getImageData(final String productCode, final Session session) throws RepositoryException {
+        Iterator<Node> nodeIterator = Iterators.emptyIterator();
+        final QueryManager queryManager = session.getWorkspace().getQueryManager();
+        final ProductImageResolver resolver = getReadyImageResolver();
+        if (StringUtils.isNotBlank(productCode) && resolver != null) {
+            nodeIterator = readNodes(session, resolver.getImagePaths(productCode)).iterator();
+        } else if (StringUtils.isNotBlank(productCode)) {
+            javax.jcr.query.Query query = queryManager.createQuery(IMAGE_SEARCH_QUERY_BEGINNING + productCode
+                    + IMAGE_SEARCH_QUERY_END, javax.jcr.query.Query.SQL);
+            nodeIterator = query.execute().getNodes();
+        }
+        return nodeIterator;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Iterator<Node> getAllProductImageData(final String productCode, final Session session)
+            throws RepositoryException {
+        Iterator<Node> nodeIterator = Iterators.emptyIterator();
+        if (StringUtils.isNotBlank(productCode)) {
+
+            final String pathToProductImage = getProductImageFolder(productCode);
+            // the folder is known, so listing it avoids the query engine and the full-text index
+            if (session.nodeExists(PRODUCT_IMAGES_PATH + pathToProductImage)) {
+                return listProductImages(session.getNode(PRODUCT_IMAGES_PATH + pathToProductImage), productCode);
+            }
+            String queryString = String.format(ALL_IMAGE_SEARCH_QUERY, pathToProductImage, productCode);
+
+            final QueryManager queryManager = session.getWorkspace().getQueryManager();
+            final javax.jcr.query.Query query = queryManager.createQuery(queryString, Query.JCR_SQL2);
+
+            nodeIterator = query.execute().getNodes();
+        }
+        return nodeIterator;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Iterator<Node> getSwatchImageData(final String productCode, final Session session)
+            throws RepositoryException {
+        Iterator<Node> nodeIterator = Iterators.emptyIterator();
+        final QueryManager queryManager = session.getWorkspace().getQueryManager();
+        final ProductImageResolver resolver = getReadyImageResolver();
+        if (StringUtils.isNotBlank(productCode) && resolver != null) {
+            nodeIterator = readNodes(session, resolver.getSwatchImagePaths(productCode)).iterator();
+        } else if (StringUtils.isNotBlank(productCode)) {
+            javax.jcr.query.Query query = queryManager.createQuery(IMAGE_SEARCH_QUERY_BEGINNING + productCode
+                    + SWATCH_IMAGE_SEARCH_QUERY_END, javax.jcr.query.Query.SQL);
+            nodeIterator = query.execute().getNodes();
+        }
+        return nodeIterator;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ListMultimap<String, Node> getImageData(final Collection<String> productCodes, final Session session)
+            throws RepositoryException {
+        final ProductImageResolver resolver = getReadyImageResolver();
+        if (resolver != null) {
+            ListMultimap<String, Node> images = ArrayListMultimap.create();
+            for (String productCode : productCodes) {
+                images.putAll(productCode, readNodes(session, resolver.getImagePaths(productCode)));
+            }
+            return images;
+        }
+        return filterImages(getAllProductImageData(productCodes, session), false);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ListMultimap<String, Node> getSwatchImageData(final Collection<String> productCodes,
+                                                         final Session session) throws RepositoryException {
+        final ProductImageResolver resolver = getReadyImageResolver();
+        if (resolver != null) {
+            ListMultimap<String, Node> images = ArrayListMultimap.create();
+            for (String productCode : productCodes) {
+                images.putAll(productCode, readNodes(session, resolver.getSwatchImagePaths(productCode)));
+            }
+            return images;
+        }
+        return filterImages(getAllProductImageData(productCodes, session), true);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ListMultimap<String, Node> getAllProductImageData(final Collection<String> productCodes,
+                                                             final Session session) throws RepositoryException {
+        ListMultimap<String, Node> images = ArrayListMultimap.create();
+        final ProductImageResolver resolver = getReadyImageResolver();
+        if (resolver != null) {
+            for (String productCode : productCodes) {
+                images.putAll(productCode, readNodes(session, resolver.getImagePaths(productCode)));
+                images.putAll(productCode, readNodes(session, resolver.getSwatchImagePaths(productCode)));
+            }
+            return images;
+        }
+        Set<String> codes = Sets.newLinkedHashSet(Iterables.filter(productCodes, new Predicate<String>() {
+            @Override
+            public boolean apply(final String productCode) {
+                return StringUtils.isNotBlank(productCode);
+            }
+        }));
+        final QueryManager queryManager = session.getWorkspace().getQueryManager();
+        for (List<String> batch : Iterables.partition(codes, IMAGE_BATCH_SIZE)) {
+            // codes sharing a folder are found by the same constraint and told apart by the asset name
+            Multimap<String, String> codesByFolder = LinkedHashMultimap.create();
+            for (String productCode : batch) {
+                codesByFolder.put(getProductImageFolder(productCode), productCode);
+            }
+            List<String> constraints = Lists.newArrayListWithCapacity(codesByFolder.keySet().size());
+            for (String folder : codesByFolder.keySet()) {
+                constraints.add(String.format(IMAGE_FOLDER_CONSTRAINT, folder.replace("'", "''")));
+            }
+            String queryString = IMAGE_BATCH_SEARCH_QUERY + Joiner.on(" OR ").join(constraints);
+
+            NodeIterator nodes = queryManager.createQuery(queryString, Query.JCR_SQL2).execute().getNodes();
+            while (nodes.hasNext()) {
+                Node imageNode = nodes.nextNode();
+                String name = imageNode.getName();
+                String folder = StringUtils.removeStart(Text.getRelativeParent(imageNode.getPath(), 1),
+                        PRODUCT_IMAGES_PATH);
+                for (String productCode : codesByFolder.get(folder)) {
+                    if (StringUtils.startsWithIgnoreCase(name, productCode)) {
+                        images.put(productCode, imageNode);
+                    }
+                }
+            }
+        }
+        return images;
+    }
+
+    private ProductImageResolver getReadyImageResolver() {
+        final ProductImageResolver resolver = imageResolver;
+        return resolver != null && resolver.isReady() ? resolver : null;
+    }
+
+    private static List<Node> readNodes(final Session session, final List<String> paths)
+            throws RepositoryException {
+        List<Node> nodes = Lists.newArrayListWithCapacity(paths.size());
+        for (String path : paths) {
+            // the resolver may trail a removal
+            if (session.nodeExists(path)) {
+                nodes.add(session.getNode(path));
+            }
+        }
+        return nodes;
+    }
+
+    private static Iterator<Node> listProductImages(final Node folderNode, final String productCode)
+            throws RepositoryException {
+        List<Node> images = Lists.newArrayList();
+        NodeIterator children = folderNode.getNodes();
+        while (children.hasNext()) {
+            Node child = children.nextNode();
+            if (StringUtils.startsWithIgnoreCase(child.getName(), productCode) && child.isNodeType(DAM_ASSET)) {
+                images.add(child);
+            }
+        }
+        return images.iterator();
+    }
+
+    private static ListMultimap<String, Node> filterImages(final ListMultimap<String, Node> images,
+                                                           final boolean swatches) throws RepositoryException {
+        ListMultimap<String, Node> filteredImages = ArrayListMultimap.create();
+        for (Map.Entry<String, Node> image : images.entries()) {
+            String suffix = image.getValue().getName().substring(image.getKey().length());
+            if (suffix.toLowerCase(Locale.ENGLISH).contains(SWATCH_IMAGE_MARKER) == swatches) {
+                filteredImages.put(image.getKey(), image.getValue());
+            }
+        }
+        return filteredImages;
+    }
+
+    private static String getProductImageFolder(final String productCode) {
+        final String[] productCodeParts = FluentIterable.from(Splitter.fixedLength(3).split(productCode)).toArray(
+                String.class);
+        return Joiner.on(File.separator).join(productCodeParts);
+    }
+
+    private ProductSearchResult searchProducts(final Sql2QueryBuilder query, final long offset, final int limit,
+                                               final String sortProperty, final boolean seek,
+                                               final Set<String> fields, final boolean facets) {
+        ProductSearchResult searchResult = ProductSearchResult.empty();
+        try (SessionHolder sessionHolder = openSession()) {
+            Session session = sessionHolder.getSession();
+
+            RowIterator rows = executeQuery(session, query.getQuery(), query.getBindValues(session.getValueFactory()),
+                    offset, limit);
+            List<Row> page = Lists.newArrayList(limitToSize(rows, limit));
+            List<Product> products = mapRowsToProducts(page.iterator(), fields);
+            String nextAfter = null;
+            if (sortProperty != null && limit > 0 && page.size() == limit) {
+                nextAfter = createSeekToken(page.get(page.size() - 1).getNode("product"), sortProperty);
+            }
+
+            searchResult = createSearchResultsPage(session, query, products, nextAfter, offset, limit, seek, facets);
+        } catch (RepositoryException e) {
+            LOG.error("Error on access to node: ", e);
+        }
+
+        return searchResult;
+    }
+
+    private SessionHolder openSession() throws RepositoryException {
+        final SessionPool pool = sessionPool;
+        return pool != null ? new SessionHolder(pool) : new SessionHolder(repository);
+    }
+
+    private RowIterator executeQuery(final Session session, final String queryString,
+                                     final Map<String, Value> bindValues, final long offset, final int limit)
+            throws RepositoryException {
+
+        LOG.trace("Searching Source Catalog: [{}] {}", queryString, bindValues);
+
+        // a fresh session per call would only fill the cache, so the queries are reused on pooled sessions only
+        Query query = sessionPool != null ? preparedQueries.getQuery(session, queryString)
+                : PreparedQueryCache.createQuery(session, queryString);
+        for (Map.Entry<String, Value> bindValue : bindValues.entrySet()) {
+            query.bindValue(bindValue.getKey(), bindValue.getValue());
+        }
+        query.setOffset(offset);
+        query.setLimit(limit > 0 ? limit : NO_LIMIT);
+
+        QueryResult searchResult = query.execute();
+
+        return searchResult.getRows();
+    }
+
+    private ProductSearchResult createSearchResultsPage(final Session session, final Sql2QueryBuilder query,
+                                                        final List<Product> products, final String nextAfter,
+                                                        final long offset, final int limit, final boolean seek,
+                                                        final boolean facets)
+            throws RepositoryException {
+
+        // the total is counted separately from fetching the page and cached per criteria
+        long total = offset + products.size();
+        boolean exact = true;
+        Map<String, Map<String, Long>> facetCounts = Collections.emptyMap();
+        // no need to count when the page is the last one of an offset pagination
+        if (facets || (limit > 0 && (seek || products.size() == limit || (offset > 0 && products.isEmpty())))) {
+            SearchTotals searchTotals = countProducts(session, query, facets);
+            exact = searchTotals.count <= maxCount;
+            total = exact ? searchTotals.count : maxCount;
+            if (facets) {
+                facetCounts = searchTotals.facets;
+            }
+        }
+        return new ProductSearchResult(products, total, exact, nextAfter, facetCounts);
+    }
+
+    /**
+     * Counts the products and, if requested, their facets in the same pass over the rows. Both stop at the
+     * configured maximum, so the facets are exact only when the total is.
+     */
+    private SearchTotals countProducts(final Session session, final Sql2QueryBuilder query, final boolean facets)
+            throws RepositoryException {
+        List<Object> countKey = query.getCountKey();
+        SearchTotals searchTotals = totals.getIfPresent(countKey);
+        if (searchTotals == null || (facets && searchTotals.facets == null)) {
+            RowIterator rows = executeQuery(session, query.getCountQuery(),
+                    query.getCountBindValues(session.getValueFactory()), 0, maxCount + 1);
+            if (facets) {
+                FacetCounter facetCounter = new FacetCounter();
+                long count = 0;
+                while (rows.hasNext()) {
+                    Row row = rows.nextRow();
+                    // the extra row only tells the total is above the maximum, the facets stop at the maximum
+                    if (++count <= maxCount) {
+                        facetCounter.add(row.getNode("product"));
+                    }
+                }
+                searchTotals = new SearchTotals(count, facetCounter.getCounts());
+            } else {
+                long size = rows.getSize();
+                searchTotals = new SearchTotals(size >= 0 ? size : Iterators.size(rows), null);
+            }
+            totals.put(countKey, searchTotals);
+        }
+        return searchTotals;
+    }
+
+    private static Cache<List<Object>, SearchTotals> createTotalsCache(final int ttl) {
+        return CacheBuilder.newBuilder()
+                .maximumSize(COUNT_CACHE_SIZE)
+                .expireAfterWrite(ttl, TimeUnit.SECONDS)
+                .build();
+    }
+
+    /**
+     * Creates the keyset token of the product node, null if the node does not have an ext id.
+     */
+    static String createSeekToken(final Node productNode, final String sortProperty)
+            throws RepositoryException {
+        String extId = JcrUtils.getStringProperty(productNode, FglJcrProductProperties.EXT_ID, null);
+        String sortValue = JcrUtils.getStringProperty(productNode, sortProperty, null);
+
+        return extId == null ? null : SeekToken.of(sortValue, extId).toString();
+    }
+
+    private static Iterator<Row> limitToSize(final RowIterator rows, final int limit) {
+        @SuppressWarnings("unchecked")
+        Iterator<Row> page = rows;
+        if (limit > 0) {
+            page = Iterators.limit(page, limit);
+        }
+
+        return page;
+    }
+
+    private List<Product> mapRowsToProducts(final Iterator<Row> iterator, final Set<String> fields)
+            throws RepositoryException {
+        List<Product> result = Lists.newArrayList();
+        List<String> authors = Lists.newArrayList();
+        while (iterator.hasNext()) {
+            Node productNode = iterator.next().getNode("product");
+
+            result.add(createProduct(productNode, fields));
+            if (isRequested(fields, FglJcrProductProperties.LAST_MODIFIED)) {
+                authors.add(getAuthor(productNode));
+            }
+        }
+        if (authors.isEmpty()) {
+            return result;
+        }
+
+        // all the authors of the page are resolved within one resource resolver
+        Map<String, String> displayNames = usersDao.getUserDisplayNames(Sets.newHashSet(authors));
+        for (int i = 0; i < result.size(); i++) {
+            String displayName = displayNames.get(authors.get(i));
+            result.get(i).setLastModified(Objects.firstNonNull(displayName, StringUtils.EMPTY));
+        }
+
+        return result;
+    }
+
+    private Product createProduct(final Node productNode, final Set<String> fields) throws RepositoryException {
+        Product product = new Product();
+        // the path of the page is the path of the product node without the "jcr:content/product" suffix
+        product.setPath(Text.getRelativeParent(productNode.getPath(), 2));
+        if (fields.isEmpty()) {
+            setProductProperties(productNode, product);
+        } else {
+            setProductProperties(productNode, product, fields);
+        }
+
+        return product;
+    }
+
+    /**
+     * Reads only the requested properties, the rest of the product fields are left unset.
+     */
+    private static void setProductProperties(final Node productNode, final Product product, final Set<String> fields)
+            throws RepositoryException {
+        for (String field : fields) {
+            switch (field) {
+                case FglJcrProductProperties.CREATION_DATE:
+                    product.setEcommCreationDate(JcrUtils.getDateProperty(productNode, field, null));
+                    break;
+                case FglJcrProductProperties.ACTIVATION_DATE:
+                    product.setActivationDate(JcrUtils.getDateProperty(productNode, field, null));
+                    break;
+                case FglJcrProductProperties.AVAILABILITY_DATE:
+                    product.setEcommAvailabilityDate(JcrUtils.getDateProperty(productNode, field, null));
+                    break;
+                case FglJcrProductProperties.ECOMM_LAST_MODIFIED_DATE:
+                    product.setEcommLastModifiedDate(JcrUtils.getDateProperty(productNode, field, null));
+                    break;
+                case NameConstants.PN_PAGE_LAST_MOD:
+                    product.setJcrLastModified(JcrUtils.getDateProperty(productNode.getParent(), field,
+                            JcrUtils.getDateProperty(productNode, FglJcrProductProperties.ECOMM_LAST_MODIFIED_DATE,
+                                    null)));
+                    break;
+                case FglJcrProductProperties.LAST_IMPORTED_DATE:
+                    product.setLastImportedDate(JcrUtils.getDateProperty(productNode, field, null));
+                    break;
+                case FglJcrProductProperties.ECOMM_BRAND:
+                    product.setBrand(JcrUtils.getStringProperty(productNode, field, StringUtils.EMPTY));
+                    break;
+                case FglJcrProductProperties.EXT_ID:
+                    product.setExtId(JcrUtils.getStringProperty(productNode, field, StringUtils.EMPTY));
+                    break;
+                case FglJcrProductProperties.LONG_DESCRIPTION:
+                    product.setLongDescription(JcrUtils.getStringProperty(productNode, field, StringUtils.EMPTY));
+                    break;
+                case FglJcrProductProperties.PRODUCT_NAME:
+                    product.setPmmProductTitle(JcrUtils.getStringProperty(productNode, field, StringUtils.EMPTY));
+                    break;
+                case FglJcrProductProperties.PRODUCT_TITLE:
+                    product.setProductTitle(JcrUtils.getStringProperty(productNode, field, StringUtils.EMPTY));
+                    break;
+                case FglJcrProductProperties.PROMO_MESSAGE:
+                    product.setPromoMessage(JcrUtils.getStringProperty(productNode, field, StringUtils.EMPTY));
+                    break;
+                case FglJcrProductProperties.SPECIFICATION:
+                    product.setSpecification(JcrUtils.getStringProperty(productNode, field, StringUtils.EMPTY));
+                    break;
+                case FglJcrProductProperties.ECOMM_FULFILLER_NAME:
+                    product.setFulfillerName(JcrUtils.getStringProperty(productNode, field, StringUtils.EMPTY));
+                    break;
+                case FglJcrProductProperties.ECOMM_VENDOR:
+                    product.setVendor(JcrUtils.getStringProperty(productNode, field, StringUtils.EMPTY));
+                    break;
+                case FglJcrProductProperties.FEATURES:
+                    product.setFeatures(JcrUtils.getStringProperty(productNode, field, StringUtils.EMPTY));
+                    break;
+                case FglJcrProductProperties.SELLABLE:
+                    product.setSellable(JcrUtils.getBooleanProperty(productNode, field, true));
+                    break;
+                case FglJcrProductProperties.HYBRIS_GIFT_WRAPPABLE:
+                    product.setHybrisGiftWrappable(JcrUtils.getBooleanProperty(productNode, field, false));
+                    break;
+                case FglJcrProductProperties.PRODUCT_COMPARABLE:
+                    product.setProductComparable(JcrUtils.getBooleanProperty(productNode, field, false));
+                    break;
+                case FglJcrProductProperties.SHIP_TO_STORE:
+                    product.setShipToStore(JcrUtils.getBooleanProperty(productNode, field, false));
+                    break;
+                case FglJcrProductProperties.PRODUCT_STATUS:
+                    product.setProductStatus(productNode.getProperty(field).getLong());
+                    break;
+                case FglJcrProductProperties.ECOMM_FULFILLER_ID:
+                    product.setFulfillerId(productNode.getProperty(field).getLong());
+                    break;
+                case FglJcrProductProperties.STATUS:
+                    product.setPublishStatus(productNode.getProperty(field).getLong());
+                    break;
+                case FglJcrProductProperties.IMAGES:
+                    product.setImageAssociated(productNode.getProperties("images*").hasNext());
+                    break;
+                case FglJcrProductProperties.ECOMM_ASSEMBLY_REQUIRED:
+                    product.setAssemblyRequired(JcrUtils.getBooleanProperty(productNode, field, false));
+                    break;
+                case FglJcrProductProperties.ECOMM_STICK_WARRANTY:
+                    product.setStickWarranty(JcrUtils.getBooleanProperty(productNode, field, false));
+                    break;
+                default:
+                    // lastModified is resolved for the whole page at once, unknown fields are ignored
+                    break;
+            }
+        }
+    }
+
+    private void setProductProperties(final Node productNode, final Product product) throws RepositoryException {
+        product.setEcommCreationDate(JcrUtils.getDateProperty(productNode, FglJcrProductProperties.CREATION_DATE, null));
+        product.setActivationDate(JcrUtils.getDateProperty(productNode, FglJcrProductProperties.ACTIVATION_DATE, null));
+        product.setEcommAvailabilityDate(JcrUtils.getDateProperty(productNode,
+                FglJcrProductProperties.AVAILABILITY_DATE, null));
+
+        Calendar ecommLastModDate = JcrUtils.getDateProperty(productNode,
+                FglJcrProductProperties.ECOMM_LAST_MODIFIED_DATE, null);
+        product.setEcommLastModifiedDate(ecommLastModDate);
+        product.setJcrLastModified(JcrUtils.getDateProperty(productNode.getParent(),
+                NameConstants.PN_PAGE_LAST_MOD, ecommLastModDate));
+
+        product.setLastImportedDate(JcrUtils.getDateProperty(productNode, FglJcrProductProperties.LAST_IMPORTED_DATE,
+                null));
+        product.setBrand(JcrUtils
+                .getStringProperty(productNode, FglJcrProductProperties.ECOMM_BRAND, StringUtils.EMPTY));
+        product.setExtId(JcrUtils.getStringProperty(productNode, FglJcrProductProperties.EXT_ID, StringUtils.EMPTY));
+        product.setLongDescription(JcrUtils.getStringProperty(productNode, FglJcrProductProperties.LONG_DESCRIPTION,
+                StringUtils.EMPTY));
+        product.setPmmProductTitle(JcrUtils.getStringProperty(productNode, FglJcrProductProperties.PRODUCT_NAME,
+                StringUtils.EMPTY));
+        product.setProductTitle(JcrUtils.getStringProperty(productNode, FglJcrProductProperties.PRODUCT_TITLE,
+                StringUtils.EMPTY));
+        product.setPromoMessage(JcrUtils.getStringProperty(productNode, FglJcrProductProperties.PROMO_MESSAGE,
+                StringUtils.EMPTY));
+        product.setSpecification(JcrUtils.getStringProperty(productNode, FglJcrProductProperties.SPECIFICATION,
+                StringUtils.EMPTY));
+        product.setFulfillerName(JcrUtils.getStringProperty(productNode, FglJcrProductProperties.ECOMM_FULFILLER_NAME,
+                StringUtils.EMPTY));
+        product.setVendor(JcrUtils.getStringProperty(productNode, FglJcrProductProperties.ECOMM_VENDOR, StringUtils.EMPTY));
+
+        product.setFeatures(JcrUtils
+                .getStringProperty(productNode, FglJcrProductProperties.FEATURES, StringUtils.EMPTY));
+
+        product.setSellable(JcrUtils.getBooleanProperty(productNode, FglJcrProductProperties.SELLABLE, false));
+        product.setHybrisGiftWrappable(JcrUtils.getBooleanProperty(productNode,
+                FglJcrProductProperties.HYBRIS_GIFT_WRAPPABLE, false));
+        product.setProductComparable(JcrUtils.getBooleanProperty(productNode,
+                FglJcrProductProperties.PRODUCT_COMPARABLE, false));
+        product.setShipToStore(JcrUtils.getBooleanProperty(productNode, FglJcrProductProperties.SHIP_TO_STORE, false));
+        product.setSellable(JcrUtils.getBooleanProperty(productNode, FglJcrProductProperties.SELLABLE, true));
+
+        product.setProductStatus(productNode.getProperty(FglJcrProductProperties.PRODUCT_STATUS).getLong());
+        product.setFulfillerId(productNode.getProperty(FglJcrProductProperties.ECOMM_FULFILLER_ID).getLong());
+        product.setPublishStatus(productNode.getProperty(FglJcrProductProperties.STATUS).getLong());
+
+        // qualified, the component property annotation takes the simple name
+        final Iterable<javax.jcr.Property> properties = JcrUtils.getProperties(productNode, "images*");
+        product.setImageAssociated(Iterables.size(properties) > 0);
+        product.setAssemblyRequired(JcrUtils.getBooleanProperty(productNode,
+                FglJcrProductProperties.ECOMM_ASSEMBLY_REQUIRED, false));
+        product.setStickWarranty(JcrUtils.getBooleanProperty(productNode, FglJcrProductProperties.ECOMM_STICK_WARRANTY, false));
+    }
+
+    private static boolean isRequested(final Set<String> fields, final String field) {
+        return fields.isEmpty() || fields.contains(field);
+    }
+
+    private static String getAuthor(final Node productNode) throws RepositoryException {
+        final String lastModifiedBy = JcrUtils
+                .getStringProperty(productNode.getParent(), NameConstants.PN_PAGE_LAST_MOD_BY, null);
+        final String createdBy = JcrUtils
+                .getStringProperty(productNode.getParent(), JcrConstants.JCR_CREATED_BY, StringUtils.EMPTY);
+        return Objects.firstNonNull(lastModifiedBy, createdBy);
+    }
+
+    private static Sql2QueryBuilder buildSql2SearchQuery(final Multimap<String, String> searchCriteria,
+                                                         final Optional<SeekToken> after) {
+        StringBuilder path = new StringBuilder(FglPathConstants.SOURCE_JCR_PATH);
+        if (searchCriteria.containsKey(PATH_PREDICATE)) {
+            path.append(Iterables.get(searchCriteria.get(PATH_PREDICATE), 0));
+        }
+
+        Sql2QueryBuilder builder = Sql2QueryBuilder.createProductSearchQuery(path.toString()).withBindVariables();
+
+        builder.addFullTextConstraint(searchCriteria.get(FULL_TEXT));
+        builder.addProductNameConstraint(searchCriteria.get(PMM_TITLE_PREDICATE));
+
+        builder.addPropertyConstraint(FglJcrProductProperties.EXT_ID, searchCriteria.get(IDENTIFIER));
+        builder.addPropertyConstraint(FglJcrProductProperties.ECOMM_FULFILLER_NAME,
+                searchCriteria.get(FULFILLER_NAME_PREDICATE));
+        builder.addPropertyConstraint(FglJcrProductProperties.SELLABLE, searchCriteria.get(SELLABLE_PREDICATE));
+        builder.addPublishStatusConstraint(searchCriteria.get(STATUS_PREDICATE));
+        builder.addPropertyConstraint(FglJcrProductProperties.ECOMM_BRAND, extractBrandFilters(searchCriteria));
+        builder.addPropertyConstraint(FglJcrProductProperties.ECOMM_VENDOR, extractVendorsFilters(searchCriteria));
+        addTagsCriteria(builder, searchCriteria.get(TAGS_PREDICATE));
+        builder.addDateRangeLowerBound(FglJcrProductProperties.CREATION_DATE,
+                searchCriteria.get(CREATION_DATE_LOWER_BOUND_PREDICATE));
+        builder.addDateRangeUpperBound(FglJcrProductProperties.CREATION_DATE,
+                searchCriteria.get(CREATION_DATE_UPPER_BOUND_PREDICATE));
+
+        builder.addDateRangeLowerBound(FglJcrProductProperties.ECOMM_LAST_MODIFIED_DATE, searchCriteria.get(MODIFIED_DATE_RANGE_LOWER_BOUND));
+        builder.addDateRangeUpperBound(FglJcrProductProperties.ECOMM_LAST_MODIFIED_DATE, searchCriteria.get(MODIFIED_DATE_RANGE_UPPER_BOUND));
+
+        if (after.isPresent()) {
+            builder.addSeekConstraint(Iterables.get(searchCriteria.get(P_SORT), 0),
+                    Iterables.getFirst(searchCriteria.get(P_DIR), null), after.get());
+        }
+        builder.addSortingClause(searchCriteria.get(P_SORT), searchCriteria.get(P_DIR));
+
+        return builder;
+    }
+
+    private static void addTagsCriteria(final Sql2QueryBuilder builder, final Collection<String> criterias) {
+        if (criterias.isEmpty()) {
+            return;
+        }
+        final Collection<String> strongConditions = Lists.newArrayList();
+        final Collection<String> weakConditions = Lists.newArrayList();
+
+        for (String criteria : criterias) {
+            if (criteria.toLowerCase().startsWith(CATEGORY_TAG)) {
+                weakConditions.add(criteria + ANY_ENDING);
+                weakConditions.add(criteria);
+            } else {
+                strongConditions.add(criteria);
+            }
+        }
+
+        builder.addPropertyConstraint(NameConstants.PN_TAGS, strongConditions);
+        builder.addPropertyLike(NameConstants.PN_TAGS, weakConditions);
+    }
+
+    private static Sql2QueryBuilder buildSql2SearchQuery(final ProductsSelector productsSelector,
+                                                         final Optional<SeekToken> after) {
+        Sql2QueryBuilder builder = Sql2QueryBuilder.createCategoryProductsQuery(productsSelector.getCategoryPath())
+                .withBindVariables();
+
+        if (after.isPresent()) {
+            builder.addSeekConstraint(productsSelector.getSortAttribute(), productsSelector.getSortDirection(),
+                    after.get());
+        }
+
+        builder.addSortingClause(Collections.singleton(productsSelector.getSortAttribute()),
+                Collections.singleton(productsSelector.getSortDirection()));
+
+        return builder;
+    }
+
+    private static Set<String> extractBrandFilters(final Multimap<String, String> searchCriteria) {
+        Set<String> brands = Sets.newHashSet();
+        for (Map.Entry<String, String> property : searchCriteria.entries()) {
+            if (BRANDS_PROPERTIES_PATTERN.matcher(property.getKey()).matches()) {
+                brands.add(property.getValue());
+            }
+        }
+        return brands;
+    }
+
+    private static Set<String> extractVendorsFilters(final Multimap<String, String> searchCriteria) {
+        Set<String> brands = Sets.newHashSet();
+        for (Map.Entry<String, String> property : searchCriteria.entries()) {
+            if (VENDORS_PROPERTIES_PATTERN.matcher(property.getKey()).matches()) {
+                brands.add(property.getValue());
+            }
+        }
+        return brands;
+    }
+
+    /**
+     * Maps the rows chunk by chunk, so the authors of a chunk are still resolved at once.
+     */
+    private final class StreamingProductIterator extends AbstractIterator<Product> implements ProductIterator {
+
+        private final SessionHolder sessionHolder;
+        private final Iterator<Row> rows;
+        private Iterator<Product> chunk = Iterators.emptyIterator();
+        private boolean closed;
+
+        private StreamingProductIterator(final SessionHolder sessionHolder, final Iterator<Row> rows) {
+            this.sessionHolder = sessionHolder;
+            this.rows = rows;
+        }
+
+        @Override
+        protected Product computeNext() {
+            if (!chunk.hasNext()) {
+                if (closed || !rows.hasNext()) {
+                    close();
+                    return endOfData();
+                }
+                try {
+                    chunk = mapRowsToProducts(Iterators.limit(rows, STREAM_CHUNK_SIZE),
+                            Collections.<String>emptySet()).iterator();
+                } catch (RepositoryException e) {
+                    close();
+                    throw new IllegalStateException("Can not read the products of the search", e);
+                }
+            }
+            return chunk.next();
+        }
+
+        @Override
+        public void close() {
+            if (!closed) {
+                closed = true;
+                if (sessionHolder != null) {
+                    sessionHolder.close();
+                }
+            }
+        }
+    }
+
+    /**
+     * Cached total of a search criteria, with the facet counts when they were requested.
+     */
+    private static final class SearchTotals {
+
+        private final long count;
+        private final Map<String, Map<String, Long>> facets;
+
+        private SearchTotals(final long count, final Map<String, Map<String, Long>> facets) {
+            this.count = count;
+            this.facets = facets;
+        }
+    }
+}
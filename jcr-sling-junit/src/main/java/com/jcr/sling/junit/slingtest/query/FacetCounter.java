@@ -0,0 +1,66 @@
+package com.jcr.sling.junit.slingtest.query;
+
+import com.google.common.collect.ImmutableMap;
+import com.jcr.sling.junit.slingtest.query.add.ProductSearchResult;
+import org.apache.jackrabbit.commons.JcrUtils;
+
+import javax.jcr.Node;
+import javax.jcr.RepositoryException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Counts the values of the {@link ProductSearchResult#FACET_PROPERTIES} over the product nodes of a search.
+ * Counters are mutable primitives, so counting a value does not allocate. Not thread-safe.
+ */
+final class FacetCounter {
+
+    private final Map<String, Map<String, long[]>> counters = new LinkedHashMap<>();
+
+    /**
+     * Instantiates a new facet counter.
+     */
+    FacetCounter() {
+        for (String property : ProductSearchResult.FACET_PROPERTIES) {
+            counters.put(property, new HashMap<String, long[]>());
+        }
+    }
+
+    /**
+     * Counts the facet values of the product node.
+     *
+     * @param productNode the product node
+     * @throws RepositoryException if the node cannot be read
+     */
+    void add(final Node productNode) throws RepositoryException {
+        for (Map.Entry<String, Map<String, long[]>> facet : counters.entrySet()) {
+            String value = JcrUtils.getStringProperty(productNode, facet.getKey(), null);
+            if (value != null) {
+                long[] counter = facet.getValue().get(value);
+                if (counter == null) {
+                    counter = new long[1];
+                    facet.getValue().put(value, counter);
+                }
+                counter[0]++;
+            }
+        }
+    }
+
+    /**
+     * Gets the counts.
+     *
+     * @return the number of products by value by property
+     */
+    Map<String, Map<String, Long>> getCounts() {
+        ImmutableMap.Builder<String, Map<String, Long>> counts = ImmutableMap.builder();
+        for (Map.Entry<String, Map<String, long[]>> facet : counters.entrySet()) {
+            ImmutableMap.Builder<String, Long> values = ImmutableMap.builder();
+            for (Map.Entry<String, long[]> counter : facet.getValue().entrySet()) {
+                values.put(counter.getKey(), counter.getValue()[0]);
+            }
+            counts.put(facet.getKey(), values.build());
+        }
+        return counts.build();
+    }
+}
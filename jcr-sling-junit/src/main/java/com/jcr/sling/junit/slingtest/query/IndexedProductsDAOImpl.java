@@ -0,0 +1,365 @@
+package com.jcr.sling.junit.slingtest.query;
+
+import com.google.common.collect.HashMultimap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.ListMultimap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Multimap;
+import com.google.common.collect.Sets;
+import com.jcr.sling.junit.slingtest.constants.FglPathConstants;
+import com.jcr.sling.junit.slingtest.holders.SessionHolder;
+import com.jcr.sling.junit.slingtest.query.add.DateFormats;
+import com.jcr.sling.junit.slingtest.query.add.FglJcrProductProperties;
+import com.jcr.sling.junit.slingtest.query.add.Product;
+import com.jcr.sling.junit.slingtest.query.add.ProductSearchResult;
+import com.jcr.sling.junit.slingtest.query.add.ProductsSelector;
+import com.jcr.sling.junit.slingtest.query.index.ProductIndex;
+import com.jcr.sling.junit.slingtest.query.index.ProductIndexQuery;
+import com.jcr.sling.junit.slingtest.query.index.ProductIndexUpdater;
+import org.apache.commons.lang.math.NumberUtils;
+import org.apache.felix.scr.annotations.Component;
+import org.apache.felix.scr.annotations.Property;
+import org.apache.felix.scr.annotations.Reference;
+import org.apache.felix.scr.annotations.Service;
+import org.apache.sling.commons.osgi.PropertiesUtil;
+import org.apache.sling.jcr.api.SlingRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.jcr.Node;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Products DAO answering the paged property searches from the in-memory {@link ProductIndex}: the index
+ * filters, counts and sorts, only the products of the requested page are read from the repository.
+ * Full text, tags and keyset searches, unpaged searches and everything else are delegated to
+ * {@link JcrProductsDAOImpl}, as are all the searches while the index is being built. The index is kept
+ * current by the {@link ProductIndexUpdater}.
+ * <p>
+ * It is ranked below the repository DAOs, so the unfiltered ProductsDAO references keep getting those; a
+ * consumer opts in with the target {@code (component.name=com.jcr.sling.junit.slingtest.query.IndexedProductsDAOImpl)}.
+ */
+@Component
+@Service(ProductsDAO.class)
+public class IndexedProductsDAOImpl implements ProductsDAO {
+
+    private static final Logger LOG = LoggerFactory.getLogger(IndexedProductsDAOImpl.class);
+
+    private static final String PATH_PREDICATE = "path";
+    private static final String P_OFFSET = "p.offset";
+    private static final String P_LIMIT = "p.limit";
+    private static final String P_SORT = "p.sort";
+    private static final String P_DIR = "p.dir";
+    private static final String P_AFTER = "p.after";
+    private static final String P_FACETS = "p.facets";
+    private static final String MODIFIED_DATE_RANGE_LOWER_BOUND = "0_daterange.lowerBound";
+    private static final String MODIFIED_DATE_RANGE_UPPER_BOUND = "0_daterange.upperBound";
+    private static final String CREATION_DATE_LOWER_BOUND_PREDICATE = "1_daterangecustom.lowerBound";
+    private static final String CREATION_DATE_UPPER_BOUND_PREDICATE = "1_daterangecustom.upperBound";
+    private static final String IDENTIFIER = "pmmId";
+    private static final String FULFILLER_NAME_PREDICATE = "fulfillerName";
+    private static final String SELLABLE_PREDICATE = "sellable";
+    private static final String STATUS_PREDICATE = "publishStatus";
+    private static final Pattern VENDORS_PROPERTIES_PATTERN = Pattern.compile("2_group\\.property\\.\\d+_value");
+    private static final Pattern BRANDS_PROPERTIES_PATTERN = Pattern.compile("3_group\\.property\\.\\d+_value");
+    private static final Set<String> JCR_ONLY_PREDICATES = ImmutableSet.of("fulltext", "pmmTitle", "tags", P_AFTER);
+    private static final String DESCENDING = "desc";
+    private static final String PRODUCT_NODE_SUFFIX = "/jcr:content/product";
+
+    private static final int DEFAULT_SERVICE_RANKING = -1;
+    @Property(label = "Service ranking", description = "Ranking of this products DAO, by default below the repository DAOs", intValue = DEFAULT_SERVICE_RANKING)
+    private static final String SERVICE_RANKING = "service.ranking";
+
+    private static final int DEFAULT_BATCH_DELAY = 500;
+    @Property(label = "Index batch delay", description = "For how many milliseconds the repository changes are collected before they are applied to the index", intValue = DEFAULT_BATCH_DELAY)
+    private static final String BATCH_DELAY = "index.batch.delay";
+
+    private static final int DEFAULT_BATCH_SIZE = 1000;
+    @Property(label = "Index batch size", description = "Max number of changed nodes applied to the index at once", intValue = DEFAULT_BATCH_SIZE)
+    private static final String BATCH_SIZE = "index.batch.size";
+
+    @Reference
+    private SlingRepository repository;
+
+    @Reference(target = "(component.name=com.jcr.sling.junit.slingtest.query.JcrProductsDAOImpl)")
+    private ProductsDAO jcrProductsDAO;
+
+    private final ProductIndex index = new ProductIndex();
+    private volatile ProductIndexUpdater indexUpdater;
+
+    protected void activate(final Map<String, Object> properties) throws RepositoryException {
+        ProductIndexUpdater updater = new ProductIndexUpdater(repository, index,
+                PropertiesUtil.toInteger(properties.get(BATCH_DELAY), DEFAULT_BATCH_DELAY),
+                PropertiesUtil.toInteger(properties.get(BATCH_SIZE), DEFAULT_BATCH_SIZE));
+        updater.start();
+        indexUpdater = updater;
+    }
+
+    protected void deactivate() {
+        ProductIndexUpdater updater = indexUpdater;
+        indexUpdater = null;
+        if (updater != null) {
+            updater.stop();
+        }
+        index.clear();
+    }
+
+    /**
+     * Checks if the index is built, until then all the searches go to the repository.
+     *
+     * @return true, if ready
+     */
+    public boolean isReady() {
+        ProductIndexUpdater updater = indexUpdater;
+        return updater != null && updater.isReady();
+    }
+
+    /**
+     * Gets the index updater, which exposes how far the index trails the repository.
+     *
+     * @return the index updater, null when the component is not active
+     */
+    public ProductIndexUpdater getIndexUpdater() {
+        return indexUpdater;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ProductSearchResult findProducts(final ProductsSelector selector) {
+        return jcrProductsDAO.findProducts(selector);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ProductSearchResult findProducts(final Multimap<String, String> searchCriteria) {
+        return findProducts(searchCriteria, Collections.<String>emptySet());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ProductSearchResult findProducts(final Multimap<String, String> searchCriteria, final Set<String> fields) {
+        if (!isReady() || !isIndexed(searchCriteria)) {
+            return jcrProductsDAO.findProducts(searchCriteria, fields);
+        }
+
+        ProductIndexQuery query = createIndexQuery(searchCriteria);
+        ProductIndex.Page page = index.search(query);
+        List<Product> products = loadProducts(page.getExtIds(), fields);
+        String nextAfter = null;
+        if (query.getSortProperty() != null && page.getExtIds().size() == query.getLimit() && !products.isEmpty()) {
+            nextAfter = createSeekToken(products.get(products.size() - 1), query.getSortProperty());
+        }
+
+        return new ProductSearchResult(products, page.getTotal(), true, nextAfter, page.getFacets());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ProductSearchResult findProductsByStatuses(final Product.Status... statuses) {
+        return jcrProductsDAO.findProductsByStatuses(statuses);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ProductIterator streamProducts(final Multimap<String, String> searchCriteria) {
+        return jcrProductsDAO.streamProducts(searchCriteria);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ProductIterator streamProductsByStatuses(final Product.Status... statuses) {
+        return jcrProductsDAO.streamProductsByStatuses(statuses);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Iterator<Node> getImageData(final String productCode, final Session session) throws RepositoryException {
+        return jcrProductsDAO.getImageData(productCode, session);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Iterator<Node> getSwatchImageData(final String productCode, final Session session)
+            throws RepositoryException {
+        return jcrProductsDAO.getSwatchImageData(productCode, session);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Iterator<Node> getAllProductImageData(final String productCode, final Session session)
+            throws RepositoryException {
+        return jcrProductsDAO.getAllProductImageData(productCode, session);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ListMultimap<String, Node> getImageData(final Collection<String> productCodes, final Session session)
+            throws RepositoryException {
+        return jcrProductsDAO.getImageData(productCodes, session);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ListMultimap<String, Node> getSwatchImageData(final Collection<String> productCodes,
+                                                         final Session session) throws RepositoryException {
+        return jcrProductsDAO.getSwatchImageData(productCodes, session);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ListMultimap<String, Node> getAllProductImageData(final Collection<String> productCodes,
+                                                             final Session session) throws RepositoryException {
+        return jcrProductsDAO.getAllProductImageData(productCodes, session);
+    }
+
+    /**
+     * Reads the products of the page with one search by ext ids and puts them in the index order.
+     */
+    private List<Product> loadProducts(final List<String> extIds, final Set<String> fields) {
+        if (extIds.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        Multimap<String, String> criteria = HashMultimap.create();
+        criteria.putAll(IDENTIFIER, extIds);
+        Set<String> requested = fields.isEmpty() ? fields
+                : Sets.union(fields, Collections.singleton(FglJcrProductProperties.EXT_ID));
+        Map<String, Product> products = Maps.newHashMap();
+        for (Product product : jcrProductsDAO.findProducts(criteria, requested).getProducts()) {
+            products.put(product.getExtId(), product);
+        }
+
+        List<Product> result = Lists.newArrayListWithCapacity(extIds.size());
+        for (String extId : extIds) {
+            Product product = products.get(extId);
+            // the product could be removed after the index search
+            if (product != null) {
+                result.add(product);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Creates the keyset token from the product node, as the repository DAO does, so that the next page
+     * can be read by the repository search.
+     */
+    private String createSeekToken(final Product product, final String sortProperty) {
+        try (SessionHolder sessionHolder = new SessionHolder(repository)) {
+            Session session = sessionHolder.getSession();
+            String productPath = product.getPath() + PRODUCT_NODE_SUFFIX;
+            return session.nodeExists(productPath)
+                    ? AbstractJcrProductsDAO.createSeekToken(session.getNode(productPath), sortProperty) : null;
+        } catch (RepositoryException e) {
+            LOG.error("Can not read the sort value of the last product: ", e);
+        }
+        return null;
+    }
+
+    private static boolean isIndexed(final Multimap<String, String> searchCriteria) {
+        String sortProperty = Iterables.getFirst(searchCriteria.get(P_SORT), null);
+
+        // a status, limit or offset which is not a number is left to the repository search
+        return getLimit(searchCriteria) > 0 && (sortProperty == null || ProductIndex.isSortable(sortProperty))
+                && Collections.disjoint(searchCriteria.keySet(), JCR_ONLY_PREDICATES)
+                && areNumbers(searchCriteria.get(STATUS_PREDICATE)) && areNumbers(searchCriteria.get(P_OFFSET));
+    }
+
+    private static int getLimit(final Multimap<String, String> searchCriteria) {
+        return NumberUtils.toInt(Iterables.getFirst(searchCriteria.get(P_LIMIT), null), 0);
+    }
+
+    private static boolean areNumbers(final Collection<String> values) {
+        for (String value : values) {
+            try {
+                Long.parseLong(value);
+            } catch (NumberFormatException e) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static ProductIndexQuery createIndexQuery(final Multimap<String, String> searchCriteria) {
+        ProductIndexQuery query = new ProductIndexQuery();
+        String path = FglPathConstants.SOURCE_JCR_PATH + Iterables.getFirst(searchCriteria.get(PATH_PREDICATE), "");
+        query.setPath(path);
+        query.setExtIds(searchCriteria.get(IDENTIFIER));
+        query.setFulfillerNames(searchCriteria.get(FULFILLER_NAME_PREDICATE));
+        query.setBrands(extractValues(searchCriteria, BRANDS_PROPERTIES_PATTERN));
+        query.setVendors(extractValues(searchCriteria, VENDORS_PROPERTIES_PATTERN));
+
+        List<Long> statuses = Lists.newArrayList();
+        for (String status : searchCriteria.get(STATUS_PREDICATE)) {
+            statuses.add(Long.valueOf(status));
+        }
+        query.setPublishStatuses(statuses);
+        List<Boolean> sellable = Lists.newArrayList();
+        for (String value : searchCriteria.get(SELLABLE_PREDICATE)) {
+            sellable.add(Boolean.valueOf(value));
+        }
+        query.setSellable(sellable);
+
+        query.setCreationDateLowerBound(parseTime(searchCriteria, CREATION_DATE_LOWER_BOUND_PREDICATE));
+        query.setCreationDateUpperBound(parseTime(searchCriteria, CREATION_DATE_UPPER_BOUND_PREDICATE));
+        query.setLastModifiedDateLowerBound(parseTime(searchCriteria, MODIFIED_DATE_RANGE_LOWER_BOUND));
+        query.setLastModifiedDateUpperBound(parseTime(searchCriteria, MODIFIED_DATE_RANGE_UPPER_BOUND));
+
+        query.setSortProperty(Iterables.getFirst(searchCriteria.get(P_SORT), null));
+        query.setDescending(DESCENDING.equalsIgnoreCase(Iterables.getFirst(searchCriteria.get(P_DIR), null)));
+        query.setOffset(Long.valueOf(Iterables.getFirst(searchCriteria.get(P_OFFSET), "0")));
+        query.setLimit(getLimit(searchCriteria));
+        query.setFacets(Boolean.parseBoolean(Iterables.getFirst(searchCriteria.get(P_FACETS), null)));
+
+        return query;
+    }
+
+    private static Long parseTime(final Multimap<String, String> searchCriteria, final String predicate) {
+        String value = Iterables.getFirst(searchCriteria.get(predicate), null);
+        return value == null ? null : DateFormats.parseQueryDateTime(value).getMillis();
+    }
+
+    private static Set<String> extractValues(final Multimap<String, String> searchCriteria, final Pattern pattern) {
+        Set<String> values = Sets.newHashSet();
+        for (Map.Entry<String, String> property : searchCriteria.entries()) {
+            if (pattern.matcher(property.getKey()).matches()) {
+                values.add(property.getValue());
+            }
+        }
+        return values;
+    }
+}
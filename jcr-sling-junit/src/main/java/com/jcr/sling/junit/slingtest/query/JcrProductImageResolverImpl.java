@@ -0,0 +1,285 @@
+package com.jcr.sling.junit.slingtest.query;
+
+import com.day.cq.commons.jcr.JcrConstants;
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.jcr.sling.junit.slingtest.constants.FglPathConstants;
+import com.jcr.sling.junit.slingtest.holders.SessionHolder;
+import org.apache.commons.lang.StringUtils;
+import org.apache.felix.scr.annotations.Component;
+import org.apache.felix.scr.annotations.Reference;
+import org.apache.felix.scr.annotations.Service;
+import org.apache.jackrabbit.util.Text;
+import org.apache.sling.jcr.api.SlingRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.jcr.Node;
+import javax.jcr.NodeIterator;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+import javax.jcr.observation.Event;
+import javax.jcr.observation.EventIterator;
+import javax.jcr.observation.EventListener;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Keeps the image and swatch asset paths of every product in memory. The product image folders are walked
+ * once on activation, then the folders changed in the DAM are re-listed from the observation events.
+ * The walk and the updates run on one writer thread.
+ * <p>
+ * The images of a product are the assets of its folder ({@code product-images/<3-char splits of the code>})
+ * whose name starts with the code, the swatches are the ones having {@code _s} after the code.
+ */
+@Component(immediate = true)
+@Service(ProductImageResolver.class)
+public class JcrProductImageResolverImpl implements ProductImageResolver, EventListener {
+
+    private static final Logger LOG = LoggerFactory.getLogger(JcrProductImageResolverImpl.class);
+    private static final int EVENT_TYPES = Event.NODE_ADDED | Event.NODE_REMOVED;
+    private static final String DAM_ASSET = "dam:Asset";
+    private static final String SWATCH_IMAGE_MARKER = "_s";
+    private static final String ASSET_CONTENT = FglPathConstants.PATH_SEPARATOR + JcrConstants.JCR_CONTENT;
+    // the paths below a folder sort between its path with the separator and its path with the next character
+    private static final String AFTER_DESCENDANTS =
+            String.valueOf((char) (FglPathConstants.PATH_SEPARATOR.charAt(0) + 1));
+
+    @Reference
+    private SlingRepository repository;
+
+    // product code -> images of the product folder
+    private final ConcurrentMap<String, ProductImages> images = new ConcurrentHashMap<>();
+    // folder -> product code of the indexed folders, used by the writer thread only
+    private final NavigableMap<String, String> folders = new TreeMap<>();
+    private volatile boolean ready;
+    private volatile ExecutorService writer;
+    private Session observationSession;
+
+    protected void activate() throws RepositoryException {
+        writer = Executors.newSingleThreadExecutor(
+                new ThreadFactoryBuilder().setNameFormat("product-image-writer").setDaemon(true).build());
+        observationSession = repository.loginAdministrative(null);
+        observationSession.getWorkspace().getObservationManager().addEventListener(this, EVENT_TYPES,
+                FglPathConstants.PRODUCT_IMAGES_PATH, true, null, null, false);
+
+        writer.execute(new Runnable() {
+            @Override
+            public void run() {
+                rebuild();
+            }
+        });
+    }
+
+    protected void deactivate() {
+        ready = false;
+        if (observationSession != null) {
+            try {
+                observationSession.getWorkspace().getObservationManager().removeEventListener(this);
+            } catch (RepositoryException e) {
+                LOG.warn("Can not remove the product image listener: ", e);
+            }
+            observationSession.logout();
+            observationSession = null;
+        }
+        ExecutorService executor = writer;
+        writer = null;
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+        images.clear();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<String> getImagePaths(final String productCode) {
+        ProductImages productImages = getProductImages(productCode);
+        return productImages == null ? Collections.<String>emptyList() : productImages.imagePaths;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<String> getSwatchImagePaths(final String productCode) {
+        ProductImages productImages = getProductImages(productCode);
+        return productImages == null ? Collections.<String>emptyList() : productImages.swatchPaths;
+    }
+
+    private ProductImages getProductImages(final String productCode) {
+        return productCode == null ? null : images.get(productCode.toLowerCase(Locale.ENGLISH));
+    }
+
+    /**
+     * Collects the changed folders and re-lists them on the writer thread.
+     */
+    @Override
+    public void onEvent(final EventIterator events) {
+        final Set<String> paths = new TreeSet<>();
+        while (events.hasNext()) {
+            try {
+                String path = events.nextEvent().getPath();
+                // renditions and metadata do not change the images of a product
+                if (!path.contains(ASSET_CONTENT)) {
+                    paths.add(path);
+                }
+            } catch (RepositoryException e) {
+                LOG.warn("Can not read the product image event: ", e);
+            }
+        }
+        ExecutorService executor = writer;
+        if (paths.isEmpty() || executor == null) {
+            return;
+        }
+        try {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    apply(paths);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            LOG.debug("Product image resolver is stopped");
+        }
+    }
+
+    private void apply(final Set<String> paths) {
+        try (SessionHolder sessionHolder = new SessionHolder(repository)) {
+            Session session = sessionHolder.getSession();
+            for (String path : paths) {
+                // the event path is an asset of the parent folder or a whole added or removed folder
+                removeFolders(path);
+                if (session.nodeExists(path)) {
+                    indexFolders(session.getNode(path));
+                }
+                String parentPath = Text.getRelativeParent(path, 1);
+                if (session.nodeExists(parentPath)) {
+                    indexFolder(session.getNode(parentPath));
+                }
+            }
+        } catch (RepositoryException e) {
+            LOG.error("Can not update the product images: ", e);
+        }
+    }
+
+    private void rebuild() {
+        long start = System.currentTimeMillis();
+        try (SessionHolder sessionHolder = new SessionHolder(repository)) {
+            Session session = sessionHolder.getSession();
+            images.clear();
+            folders.clear();
+            if (session.nodeExists(FglPathConstants.PRODUCT_IMAGES_PATH)) {
+                indexFolders(session.getNode(FglPathConstants.PRODUCT_IMAGES_PATH));
+            }
+            ready = true;
+            LOG.info("Images of {} products loaded in {} ms", images.size(), System.currentTimeMillis() - start);
+        } catch (RepositoryException e) {
+            LOG.error("Can not load the product images: ", e);
+        }
+    }
+
+    private void indexFolders(final Node folderNode) throws RepositoryException {
+        if (folderNode.isNodeType(DAM_ASSET)) {
+            return;
+        }
+        indexFolder(folderNode);
+        for (NodeIterator children = folderNode.getNodes(); children.hasNext(); ) {
+            Node child = children.nextNode();
+            if (!child.isNodeType(DAM_ASSET) && !JcrConstants.JCR_CONTENT.equals(child.getName())) {
+                indexFolders(child);
+            }
+        }
+    }
+
+    private void indexFolder(final Node folderNode) throws RepositoryException {
+        String folder = folderNode.getPath();
+        if (!folder.startsWith(FglPathConstants.PRODUCT_IMAGES_PATH + FglPathConstants.PATH_SEPARATOR)) {
+            return;
+        }
+        String productCode = StringUtils.remove(folder.substring(FglPathConstants.PRODUCT_IMAGES_PATH.length()),
+                FglPathConstants.PATH_SEPARATOR).toLowerCase(Locale.ENGLISH);
+
+        ImmutableList.Builder<String> imagePaths = ImmutableList.builder();
+        ImmutableList.Builder<String> swatchPaths = ImmutableList.builder();
+        boolean found = false;
+        for (NodeIterator children = folderNode.getNodes(); children.hasNext(); ) {
+            Node child = children.nextNode();
+            String name = child.getName().toLowerCase(Locale.ENGLISH);
+            if (name.startsWith(productCode) && child.isNodeType(DAM_ASSET)) {
+                found = true;
+                if (name.substring(productCode.length()).contains(SWATCH_IMAGE_MARKER)) {
+                    swatchPaths.add(child.getPath());
+                } else {
+                    imagePaths.add(child.getPath());
+                }
+            }
+        }
+        if (found) {
+            ProductImages previous = images.put(productCode,
+                    new ProductImages(folder, imagePaths.build(), swatchPaths.build()));
+            if (previous != null) {
+                folders.remove(previous.folder);
+            }
+            folders.put(folder, productCode);
+        } else {
+            removeImages(productCode);
+        }
+    }
+
+    private void removeImages(final String productCode) {
+        ProductImages previous = images.remove(productCode);
+        if (previous != null) {
+            folders.remove(previous.folder);
+        }
+    }
+
+    private void removeFolders(final String path) {
+        String productCode = folders.remove(path);
+        if (productCode != null) {
+            images.remove(productCode);
+        }
+        Map<String, String> descendants = folders.subMap(path + FglPathConstants.PATH_SEPARATOR,
+                path + AFTER_DESCENDANTS);
+        for (String descendantCode : descendants.values()) {
+            images.remove(descendantCode);
+        }
+        descendants.clear();
+    }
+
+    /**
+     * Image and swatch asset paths of a product folder.
+     */
+    private static final class ProductImages {
+
+        private final String folder;
+        private final List<String> imagePaths;
+        private final List<String> swatchPaths;
+
+        private ProductImages(final String folder, final List<String> imagePaths, final List<String> swatchPaths) {
+            this.folder = folder;
+            this.imagePaths = imagePaths;
+            this.swatchPaths = swatchPaths;
+        }
+    }
+}
@@ -2,8 +2,13 @@ package com.jcr.sling.junit.slingtest.query;
 
 import com.adobe.granite.security.user.UserProperties;
 import com.adobe.granite.security.user.UserPropertiesManager;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
 import org.apache.commons.lang.StringUtils;
 import org.apache.felix.scr.annotations.Component;
+import org.apache.felix.scr.annotations.Property;
 import org.apache.felix.scr.annotations.Reference;
 import org.apache.felix.scr.annotations.Service;
 import org.apache.jackrabbit.api.JackrabbitSession;
@@ -14,11 +19,17 @@ import org.apache.sling.api.resource.Resource;
 import org.apache.sling.api.resource.ResourceResolver;
 import org.apache.sling.api.resource.ResourceResolverFactory;
 import org.apache.sling.api.resource.ResourceUtil;
+import org.apache.sling.commons.osgi.PropertiesUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.jcr.RepositoryException;
 import javax.jcr.Session;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 /**
  * The Class JcrUsersDaoImpl represents user display name by its userId.
@@ -31,9 +42,25 @@ public class JcrUsersDaoImpl implements UsersDao {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(JcrUsersDaoImpl.class);
 
+    private static final int DEFAULT_CACHE_SIZE = 500;
+    @Property(label = "Cache size", description = "Maximum number of user display names kept in memory", intValue = DEFAULT_CACHE_SIZE)
+    private static final String CACHE_SIZE = "cache.size";
+
+    private static final int DEFAULT_CACHE_TTL = 600;
+    @Property(label = "Cache TTL", description = "For how many seconds a user display name is kept in memory", intValue = DEFAULT_CACHE_TTL)
+    private static final String CACHE_TTL = "cache.ttl";
+
     @Reference
     private ResourceResolverFactory resourceResolverFactory;
 
+    private volatile Cache<String, String> displayNames = createCache(DEFAULT_CACHE_SIZE, DEFAULT_CACHE_TTL);
+
+    protected void activate(final Map<String, Object> properties) {
+        final int cacheSize = PropertiesUtil.toInteger(properties.get(CACHE_SIZE), DEFAULT_CACHE_SIZE);
+        final int cacheTtl = PropertiesUtil.toInteger(properties.get(CACHE_TTL), DEFAULT_CACHE_TTL);
+        displayNames = createCache(cacheSize, cacheTtl);
+    }
+
     /*
      * (non-Javadoc)
      *
@@ -43,36 +70,91 @@ public class JcrUsersDaoImpl implements UsersDao {
     public String getUserDisplayName(final String userId) {
         String result = StringUtils.EMPTY;
         if (StringUtils.isNotBlank(userId)) {
-            ResourceResolver administrativeResourceResolver = null;
-            try {
-                administrativeResourceResolver = resourceResolverFactory
-                        .getAdministrativeResourceResolver(null);
-                Session session = administrativeResourceResolver
-                        .adaptTo(Session.class);
-                if ((session instanceof JackrabbitSession)) {
-                    UserManager userManager = ((JackrabbitSession) session)
-                            .getUserManager();
-                    Authorizable user = userManager.getAuthorizable(userId);
-                    result = getName(administrativeResourceResolver, user,
-                            userId);
-                }
-            } catch (RepositoryException | LoginException ex) {
-                LOGGER.error("Error to get user displayName", ex);
-            } finally {
-                if (administrativeResourceResolver != null
-                        && administrativeResourceResolver.isLive()) {
-                    administrativeResourceResolver.close();
+            final String displayName = getUserDisplayNames(Collections.singleton(userId)).get(userId);
+            if (displayName != null) {
+                result = displayName;
+            }
+        }
+        return result;
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see com.fglsports.wcm.dao.UsersDao#getUserDisplayNames(java.util.Collection)
+     */
+    @Override
+    public Map<String, String> getUserDisplayNames(final Collection<String> userIds) {
+        final Set<String> requested = Sets.newHashSet();
+        for (String userId : userIds) {
+            if (StringUtils.isNotBlank(userId)) {
+                requested.add(userId);
+            }
+        }
+
+        final Map<String, String> result = Maps.newHashMap(displayNames.getAllPresent(requested));
+        final Set<String> missing = Sets.difference(requested, result.keySet()).immutableCopy();
+        if (!missing.isEmpty()) {
+            final Map<String, String> loaded = loadUserDisplayNames(missing);
+            displayNames.putAll(loaded);
+            result.putAll(loaded);
+        }
+        return result;
+    }
+
+    /**
+     * Gets the number of display names served from the cache.
+     *
+     * @return the cache hit count
+     */
+    public long getCacheHitCount() {
+        return displayNames.stats().hitCount();
+    }
+
+    /**
+     * Gets the number of display names which had to be read from the repository.
+     *
+     * @return the cache miss count
+     */
+    public long getCacheMissCount() {
+        return displayNames.stats().missCount();
+    }
+
+    private Map<String, String> loadUserDisplayNames(final Collection<String> userIds) {
+        Map<String, String> result = Maps.newHashMap();
+        ResourceResolver administrativeResourceResolver = null;
+        try {
+            administrativeResourceResolver = resourceResolverFactory
+                    .getAdministrativeResourceResolver(null);
+            Session session = administrativeResourceResolver
+                    .adaptTo(Session.class);
+            if ((session instanceof JackrabbitSession)) {
+                UserManager userManager = ((JackrabbitSession) session)
+                        .getUserManager();
+                for (String userId : userIds) {
+                    result.put(userId, getName(administrativeResourceResolver, userManager, userId));
                 }
             }
+        } catch (RepositoryException | LoginException ex) {
+            LOGGER.error("Error to get user displayName", ex);
+        } finally {
+            if (administrativeResourceResolver != null
+                    && administrativeResourceResolver.isLive()) {
+                administrativeResourceResolver.close();
+            }
         }
         return result;
     }
 
     private String getName(
             final ResourceResolver administrativeResourceResolver,
-            final Authorizable user, final String userId)
+            final UserManager userManager, final String userId)
             throws RepositoryException {
         String result = StringUtils.EMPTY;
+        Authorizable user = userManager.getAuthorizable(userId);
+        if (user == null) {
+            return result;
+        }
         Resource resource = administrativeResourceResolver.resolve(user
                 .getPath());
         if (!ResourceUtil.isNonExistingResource(resource)) {
@@ -80,8 +162,16 @@ public class JcrUsersDaoImpl implements UsersDao {
                     .adaptTo(UserPropertiesManager.class);
             UserProperties userProperties = userPropertiesManager
                     .getUserProperties(userId, PROFILE_NODE);
-            result = userProperties.getDisplayName();
+            result = StringUtils.defaultString(userProperties.getDisplayName());
         }
         return result;
     }
+
+    private static Cache<String, String> createCache(final int size, final int ttl) {
+        return CacheBuilder.newBuilder()
+                .maximumSize(size)
+                .expireAfterWrite(ttl, TimeUnit.SECONDS)
+                .recordStats()
+                .build();
+    }
 }
@@ -0,0 +1,95 @@
+package com.jcr.sling.junit.slingtest.query;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+import javax.jcr.query.Query;
+import javax.jcr.query.QueryManager;
+import java.util.Iterator;
+
+/**
+ * Keeps the parsed JCR-SQL2 queries of each session, so structurally identical searches are not parsed again.
+ * A query belongs to the session which created it, so queries are never shared between sessions. Only worth
+ * it for long-lived sessions, like the pooled ones.
+ * <p>
+ * Each query references its session, so the sessions are held strongly: the queries of the sessions logged
+ * out meanwhile are released whenever a new session is added, and the number of sessions is bounded.
+ */
+final class PreparedQueryCache {
+
+    private static final int MAX_SESSIONS = 64;
+
+    private final Cache<Session, Cache<String, Query>> queries = CacheBuilder.newBuilder()
+            .maximumSize(MAX_SESSIONS)
+            .build();
+    private final int maxSize;
+
+    /**
+     * Instantiates a new prepared query cache.
+     *
+     * @param maxSize the max number of queries kept per session
+     */
+    PreparedQueryCache(final int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Gets the parsed query for the statement, creating it on a miss. Callers own the session exclusively
+     * while using the query, so the query is not used concurrently.
+     *
+     * @param session   the session
+     * @param statement the JCR-SQL2 statement
+     * @return the query
+     * @throws RepositoryException if the statement cannot be parsed
+     */
+    Query getQuery(final Session session, final String statement) throws RepositoryException {
+        if (!session.isLive()) {
+            return createQuery(session, statement);
+        }
+        Cache<String, Query> sessionQueries = queries.getIfPresent(session);
+        if (sessionQueries == null) {
+            releaseLoggedOutSessions();
+            sessionQueries = CacheBuilder.newBuilder().maximumSize(maxSize).build();
+            queries.put(session, sessionQueries);
+        }
+
+        Query query = sessionQueries.getIfPresent(statement);
+        if (query == null) {
+            query = createQuery(session, statement);
+            sessionQueries.put(statement, query);
+        }
+        return query;
+    }
+
+    /**
+     * Gets the number of sessions having cached queries.
+     *
+     * @return the session count
+     */
+    long getSessionCount() {
+        return queries.size();
+    }
+
+    /**
+     * Creates a query without caching it, for the short-lived sessions.
+     *
+     * @param session   the session
+     * @param statement the JCR-SQL2 statement
+     * @return the query
+     * @throws RepositoryException if the statement cannot be parsed
+     */
+    static Query createQuery(final Session session, final String statement) throws RepositoryException {
+        QueryManager queryManager = session.getWorkspace().getQueryManager();
+        return queryManager.createQuery(statement, Query.JCR_SQL2);
+    }
+
+    private void releaseLoggedOutSessions() {
+        for (Iterator<Session> sessions = queries.asMap().keySet().iterator(); sessions.hasNext(); ) {
+            if (!sessions.next().isLive()) {
+                sessions.remove();
+            }
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package com.jcr.sling.junit.slingtest.query;
+
+import java.util.List;
+
+/**
+ * Resolves the product codes to the paths of their DAM image assets without querying the repository.
+ */
+public interface ProductImageResolver {
+
+    /**
+     * Checks if the images are loaded, until then nothing is resolved.
+     *
+     * @return true, if ready
+     */
+    boolean isReady();
+
+    /**
+     * Gets the paths of the product images, swatches excluded.
+     *
+     * @param productCode
+     *            - product code.
+     * @return asset paths, empty if the product has no images.
+     */
+    List<String> getImagePaths(String productCode);
+
+    /**
+     * Gets the paths of the product swatch images.
+     *
+     * @param productCode
+     *            - product code.
+     * @return asset paths, empty if the product has no swatches.
+     */
+    List<String> getSwatchImagePaths(String productCode);
+}
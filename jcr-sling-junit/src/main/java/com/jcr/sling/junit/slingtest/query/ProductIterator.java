@@ -0,0 +1,15 @@
+package com.jcr.sling.junit.slingtest.query;
+
+import com.jcr.sling.junit.slingtest.query.add.Product;
+
+import java.util.Iterator;
+
+/**
+ * Iterator over the products of a search, mapping the search rows on demand. The session of the search
+ * stays open while iterating and is released on close or when the last product was read.
+ */
+public interface ProductIterator extends Iterator<Product>, AutoCloseable {
+
+    @Override
+    void close();
+}
@@ -1,5 +1,6 @@
 package com.jcr.sling.junit.slingtest.query;
 
+import com.google.common.collect.ListMultimap;
 import com.google.common.collect.Multimap;
 import com.jcr.sling.junit.slingtest.query.add.Product;
 import com.jcr.sling.junit.slingtest.query.add.ProductSearchResult;
@@ -8,7 +9,9 @@ import com.jcr.sling.junit.slingtest.query.add.ProductsSelector;
 import javax.jcr.Node;
 import javax.jcr.RepositoryException;
 import javax.jcr.Session;
+import java.util.Collection;
 import java.util.Iterator;
+import java.util.Set;
 
 /**
  * Search product interface.
@@ -57,6 +60,19 @@ public interface ProductsDAO {
      */
     ProductSearchResult findProducts(Multimap<String, String> searchCriteria);
 
+    /**
+     * Searches products by specified criteria, reading only the requested fields.
+     *
+     * @param searchCriteria
+     *            map of values.
+     * @param fields
+     *            names of the {@link com.jcr.sling.junit.slingtest.query.add.FglJcrProductProperties} to read, plus
+     *            {@code lastModified} for the author and {@code images} for the image flag. The rest of the product
+     *            fields are left unset. Empty set means all the fields.
+     * @return search result as {@link ProductSearchResult}
+     */
+    ProductSearchResult findProducts(Multimap<String, String> searchCriteria, Set<String> fields);
+
     /**
      * Looks up products by their status
      *
@@ -78,4 +94,66 @@ public interface ProductsDAO {
      * @throws RepositoryException
      */
     Iterator<Node> getAllProductImageData(String productCode, Session session) throws RepositoryException;
+
+    /**
+     * Search product image data of many products with one query per batch of product codes.
+     *
+     * @param productCodes
+     *            - product codes.
+     * @param session
+     *            - current JCR session.
+     * @return image nodes by product code, codes without images are absent.
+     *
+     * @throws RepositoryException
+     */
+    ListMultimap<String, Node> getImageData(Collection<String> productCodes, Session session)
+            throws RepositoryException;
+
+    /**
+     * Search swatch image data of many products with one query per batch of product codes.
+     *
+     * @param productCodes
+     *            - product codes.
+     * @param session
+     *            - current JCR session.
+     * @return swatch image nodes by product code, codes without swatches are absent.
+     *
+     * @throws RepositoryException
+     */
+    ListMultimap<String, Node> getSwatchImageData(Collection<String> productCodes, Session session)
+            throws RepositoryException;
+
+    /**
+     * Search all images of many products with one query per batch of product codes. The images are looked up
+     * in the product image folders of the codes and grouped by the code their name starts with.
+     *
+     * @param productCodes
+     *            - product codes.
+     * @param session
+     *            - current JCR session.
+     * @return image nodes by product code, codes without images are absent.
+     *
+     * @throws RepositoryException
+     */
+    ListMultimap<String, Node> getAllProductImageData(Collection<String> productCodes, Session session)
+            throws RepositoryException;
+
+    /**
+     * Streams the products matching the specified criteria. The products are mapped while iterating,
+     * so the whole result is never held in memory. The iterator must be closed.
+     *
+     * @param searchCriteria
+     *            map of values, the same as for {@link #findProducts(Multimap)}.
+     * @return the product iterator
+     */
+    ProductIterator streamProducts(Multimap<String, String> searchCriteria);
+
+    /**
+     * Streams the products with the given statuses. The iterator must be closed.
+     *
+     * @param statuses
+     *            statuses to search for
+     * @return the product iterator
+     */
+    ProductIterator streamProductsByStatuses(Product.Status... statuses);
 }
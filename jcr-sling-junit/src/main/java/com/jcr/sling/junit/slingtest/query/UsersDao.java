@@ -1,5 +1,8 @@
 package com.jcr.sling.junit.slingtest.query;
 
+import java.util.Collection;
+import java.util.Map;
+
 /**
  * Created by Andrii_Manuiev on 7/2/2015.
  */
@@ -12,4 +15,12 @@ public interface UsersDao {
      * @return the user display name
      */
     String getUserDisplayName(final String userId);
+
+    /**
+     * Gets the display names of several users at once, using a single resource resolver.
+     *
+     * @param userIds the user ids, blank values are ignored
+     * @return the user display names keyed by userId
+     */
+    Map<String, String> getUserDisplayNames(final Collection<String> userIds);
 }
@@ -0,0 +1,66 @@
+package com.jcr.sling.junit.slingtest.query.add;
+
+import org.apache.commons.lang.StringUtils;
+import org.joda.time.DateTime;
+import org.joda.time.format.DateTimeFormat;
+import org.joda.time.format.DateTimeFormatter;
+import org.joda.time.format.ISODateTimeFormat;
+
+import java.util.Calendar;
+
+/**
+ * The date formats of the module. The Joda formatters are immutable and shared by all the threads.
+ */
+public final class DateFormats {
+
+    /**
+     * The format of the dates in the query parameters.
+     */
+    public static final DateTimeFormatter QUERY_DATE_TIME = DateTimeFormat.forPattern("yyyy-MM-dd'T'HH:mm:ss");
+
+    /**
+     * The ISO 8601 format of the dates in the queries, with milliseconds and time zone.
+     */
+    public static final DateTimeFormatter ISO_DATE_TIME = ISODateTimeFormat.dateTime();
+
+    /**
+     * The format of the dates shown in the product grid.
+     */
+    public static final DateTimeFormatter DISPLAY_DATE_TIME = DateTimeFormat.forPattern("dd/MM/yyyy hh:mm a");
+
+    private DateFormats() {
+    }
+
+    /**
+     * Parses a date of a query parameter.
+     *
+     * @param date the date in {@link #QUERY_DATE_TIME} format
+     * @return the date
+     */
+    public static DateTime parseQueryDateTime(final String date) {
+        return QUERY_DATE_TIME.parseDateTime(date);
+    }
+
+    /**
+     * Converts a date of a query parameter to ISO 8601.
+     *
+     * @param date the date in {@link #QUERY_DATE_TIME} format
+     * @return the date in {@link #ISO_DATE_TIME} format
+     */
+    public static String toIsoDateTime(final String date) {
+        return ISO_DATE_TIME.print(parseQueryDateTime(date));
+    }
+
+    /**
+     * Formats a date for display in the default time zone.
+     *
+     * @param calendar the date
+     * @return the date in {@link #DISPLAY_DATE_TIME} format, empty if the date is null
+     */
+    public static String toDisplayDateTime(final Calendar calendar) {
+        if (calendar == null) {
+            return StringUtils.EMPTY;
+        }
+        return DISPLAY_DATE_TIME.print(calendar.getTimeInMillis());
+    }
+}
@@ -0,0 +1,53 @@
+package com.jcr.sling.junit.slingtest.query.add;
+
+import org.jsoup.Jsoup;
+import org.jsoup.safety.Whitelist;
+
+/**
+ * Sanitizes the product text fields. Most of them are plain text, which Jsoup would return unchanged after
+ * parsing a whole document, so the text is scanned first and only the text with markup, entities or
+ * characters Jsoup escapes or normalizes is handed to {@link Jsoup#clean(String, Whitelist)}.
+ */
+public final class HtmlSanitizer {
+
+    private static final char FIRST_PLAIN = ' ';
+    private static final char LAST_PLAIN = '~';
+
+    private HtmlSanitizer() {
+    }
+
+    /**
+     * Cleans the text with the whitelist, returning the plain text as it is.
+     *
+     * @param text      the text
+     * @param whitelist the allowed tags and attributes
+     * @return the clean text
+     */
+    public static String clean(final String text, final Whitelist whitelist) {
+        return isPlainText(text) ? text : Jsoup.clean(text, whitelist);
+    }
+
+    /**
+     * Checks whether Jsoup would return the text unchanged, that is printable ASCII without the markup and
+     * the escaped characters, single spaced and trimmed.
+     *
+     * @param text the text
+     * @return true when the text needs no sanitizing
+     */
+    public static boolean isPlainText(final String text) {
+        if (text == null) {
+            return false;
+        }
+        // starting after a space rejects the leading space, as a double space is rejected
+        char previous = ' ';
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c < FIRST_PLAIN || c > LAST_PLAIN || c == '<' || c == '>' || c == '&' || c == '"'
+                    || c == ' ' && previous == ' ') {
+                return false;
+            }
+            previous = c;
+        }
+        return previous != ' ';
+    }
+}
@@ -1,14 +1,11 @@
 package com.jcr.sling.junit.slingtest.query.add;
 
 import com.day.cq.commons.jcr.JcrConstants;
-import org.apache.commons.lang.StringUtils;
 import org.apache.sling.commons.json.JSONException;
 import org.apache.sling.commons.json.JSONObject;
-import org.jsoup.Jsoup;
+import org.apache.sling.commons.json.io.JSONWriter;
 import org.jsoup.safety.Whitelist;
 
-import java.text.DateFormat;
-import java.text.SimpleDateFormat;
 import java.util.Calendar;
 
 public class Product {
@@ -96,8 +93,7 @@ public class Product {
     private String lastModified;
 
     private String dateToString(final Calendar calendar) {
-        DateFormat dateFormatter = new SimpleDateFormat("dd/MM/yyyy hh:mm a");
-        return calendar == null ? StringUtils.EMPTY : dateFormatter.format(calendar.getTime());
+        return DateFormats.toDisplayDateTime(calendar);
     }
 
     /**
@@ -107,9 +103,41 @@ public class Product {
      * @throws JSONException the JSON exception
      */
     public JSONObject toJson() throws JSONException {
-        JSONObject json = new JSONObject();
-        // TODO move formatter
+        final JSONObject json = new JSONObject();
+        putProperties(new JsonProperties() {
+            @Override
+            public void put(final String key, final Object value) throws JSONException {
+                // a null value leaves the key out
+                json.put(key, value);
+            }
+        });
+        return json;
+    }
 
+    /**
+     * Writes the product as a JSON object, leaving out the properties without value.
+     *
+     * @param writer the JSON writer
+     * @throws JSONException the JSON exception
+     */
+    public void writeJson(final JSONWriter writer) throws JSONException {
+        writer.object();
+        putProperties(new JsonProperties() {
+            @Override
+            public void put(final String key, final Object value) throws JSONException {
+                // like JSONObject.put, a null value leaves the key out
+                if (value != null) {
+                    writer.key(key).value(value);
+                }
+            }
+        });
+        writer.endObject();
+    }
+
+    /**
+     * Puts the JSON properties of the product, the same ones for {@link #toJson()} and {@link #writeJson}.
+     */
+    private void putProperties(final JsonProperties json) throws JSONException {
         json.put(JcrConstants.JCR_PATH, getPath());
 
         json.put(FglJcrProductProperties.ACTIVATION_DATE, dateToString(getActivationDate()));
@@ -122,17 +150,18 @@ public class Product {
 
         json.put(FglJcrProductProperties.ECOMM_BRAND, getEcommBrand());
         json.put(FglJcrProductProperties.EXT_ID, getExtId());
-        json.put(FglJcrProductProperties.FEATURES, Jsoup.clean(getFeatures(), Whitelist.none()));
+        json.put(FglJcrProductProperties.FEATURES, HtmlSanitizer.clean(getFeatures(), Whitelist.none()));
         json.put(FglJcrProductProperties.HYBRIS_GIFT_WRAPPABLE, isHybrisGiftWrappable());
 
-        json.put(FglJcrProductProperties.LONG_DESCRIPTION, Jsoup.clean(getLongDescription(), Whitelist.none()));
+        json.put(FglJcrProductProperties.LONG_DESCRIPTION, HtmlSanitizer.clean(getLongDescription(),
+                Whitelist.none()));
         json.put(FglJcrProductProperties.PRODUCT_NAME, getPmmProductTitle());
         json.put(FglJcrProductProperties.PRODUCT_COMPARABLE, isProductComparable());
         json.put(FglJcrProductProperties.PRODUCT_STATUS, getProductStatus());
         json.put(FglJcrProductProperties.PRODUCT_TITLE, getProductTitle());
         json.put(FglJcrProductProperties.PROMO_MESSAGE, getPromoMessage());
         json.put(FglJcrProductProperties.SHIP_TO_STORE, isShipToStore());
-        json.put(FglJcrProductProperties.SPECIFICATION, Jsoup.clean(getSpecification(), Whitelist.none()));
+        json.put(FglJcrProductProperties.SPECIFICATION, HtmlSanitizer.clean(getSpecification(), Whitelist.none()));
         json.put(FglJcrProductProperties.STATUS, getPublishStatus());
 
         json.put(FglJcrProductProperties.ECOMM_FULFILLER_ID, getFulfillerId());
@@ -144,9 +173,8 @@ public class Product {
         json.put(FglJcrProductProperties.ECOMM_STICK_WARRANTY, isStickWarranty());
         json.put(FglJcrProductProperties.IMAGES + "Associated", isImageAssociated());
         json.put(FglJcrProductProperties.PRICE, getPrice());
-        json.put(FglJcrProductProperties.LAST_MODIFIED, dateToString(getJcrLastModified()) +"("+ getLastModified()+")");
-
-        return json;
+        json.put(FglJcrProductProperties.LAST_MODIFIED,
+                dateToString(getJcrLastModified()) + "(" + getLastModified() + ")");
     }
 
     /**
@@ -686,4 +714,11 @@ public class Product {
         this.stickWarranty = stickWarranty;
     }
 
+    /**
+     * Receives the JSON properties of a product.
+     */
+    private interface JsonProperties {
+
+        void put(String key, Object value) throws JSONException;
+    }
 }
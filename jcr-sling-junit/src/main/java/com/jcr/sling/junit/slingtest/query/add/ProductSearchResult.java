@@ -1,10 +1,48 @@
 package com.jcr.sling.junit.slingtest.query.add;
 
+import com.google.common.collect.ImmutableList;
+
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 
 public final class ProductSearchResult {
+
+    /**
+     * The product properties the facets are counted for.
+     */
+    public static final List<String> FACET_PROPERTIES = ImmutableList.of(FglJcrProductProperties.ECOMM_BRAND,
+            FglJcrProductProperties.ECOMM_VENDOR, FglJcrProductProperties.STATUS,
+            FglJcrProductProperties.ECOMM_FULFILLER_NAME);
+
     private final List<Product> products;
     private final long totalProductsNumber;
+    private final boolean totalExact;
+    private final String nextAfter;
+    private final Map<String, Map<String, Long>> facets;
+
+    /**
+     * Creates a search result without a next page token and facets.
+     *
+     * @param products
+     *            the products
+     * @param totalProductsNumber
+     *            the exact total products number
+     * @return the product search result
+     */
+    public static ProductSearchResult of(final List<Product> products, final long totalProductsNumber) {
+        return new ProductSearchResult(products, totalProductsNumber, true, null,
+                Collections.<String, Map<String, Long>>emptyMap());
+    }
+
+    /**
+     * Creates a search result without any products.
+     *
+     * @return the empty product search result
+     */
+    public static ProductSearchResult empty() {
+        return of(Collections.<Product>emptyList(), 0);
+    }
 
     /**
      * Instantiates a new product search result.
@@ -13,10 +51,21 @@ public final class ProductSearchResult {
      *            the products
      * @param totalProductsNumber
      *            the total products number
+     * @param totalExact
+     *            whether the total products number is exact or only a lower bound estimate
+     * @param nextAfter
+     *            the keyset pagination token of the next page
+     * @param facets
+     *            the facet counts
      */
-    public ProductSearchResult(final List<Product> products, final long totalProductsNumber) {
+    public ProductSearchResult(final List<Product> products, final long totalProductsNumber,
+                               final boolean totalExact, final String nextAfter,
+                               final Map<String, Map<String, Long>> facets) {
         this.products = products;
         this.totalProductsNumber = totalProductsNumber;
+        this.totalExact = totalExact;
+        this.nextAfter = nextAfter;
+        this.facets = facets;
     }
 
     /**
@@ -36,4 +85,34 @@ public final class ProductSearchResult {
     public long getTotalProductsNumber() {
         return totalProductsNumber;
     }
-}
\ No newline at end of file
+
+    /**
+     * Checks if the total products number is exact. Large totals are estimated: the counting stops
+     * at the configured maximum, which is then reported as the total.
+     *
+     * @return true, if the total products number is exact
+     */
+    public boolean isTotalExact() {
+        return totalExact;
+    }
+
+    /**
+     * Gets the keyset pagination token of the next page.
+     *
+     * @return the token, or null if there is no next page or results are not sorted by a property
+     */
+    public String getNextAfter() {
+        return nextAfter;
+    }
+
+    /**
+     * Gets the facet counts of all the matching products, if requested. Like the total, the facets
+     * are counted only up to the configured maximum of products: when {@link #isTotalExact()} is false,
+     * the facets count only the first products up to that maximum and are lower bounds as well.
+     *
+     * @return the number of products by value by property of {@link #FACET_PROPERTIES}, empty if not requested
+     */
+    public Map<String, Map<String, Long>> getFacets() {
+        return facets;
+    }
+}
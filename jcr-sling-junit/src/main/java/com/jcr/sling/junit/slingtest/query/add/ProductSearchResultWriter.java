@@ -0,0 +1,57 @@
+package com.jcr.sling.junit.slingtest.query.add;
+
+import org.apache.sling.commons.json.JSONException;
+import org.apache.sling.commons.json.io.JSONWriter;
+
+import java.io.Writer;
+import java.util.Map;
+
+/**
+ * Streams a {@link ProductSearchResult} as JSON to a writer, product by product, without building the JSON
+ * objects of the whole page first.
+ */
+public final class ProductSearchResultWriter {
+
+    public static final String TOTAL = "total";
+    public static final String TOTAL_EXACT = "totalExact";
+    public static final String NEXT_AFTER = "nextAfter";
+    public static final String FACETS = "facets";
+    public static final String PRODUCTS = "products";
+
+    private ProductSearchResultWriter() {
+    }
+
+    /**
+     * Writes the search result to the writer, usually the one of the servlet response.
+     *
+     * @param result the search result
+     * @param out    the writer
+     * @throws JSONException the JSON exception
+     */
+    public static void write(final ProductSearchResult result, final Writer out) throws JSONException {
+        JSONWriter writer = new JSONWriter(out);
+        writer.object();
+        writer.key(TOTAL).value(result.getTotalProductsNumber());
+        writer.key(TOTAL_EXACT).value(result.isTotalExact());
+        if (result.getNextAfter() != null) {
+            writer.key(NEXT_AFTER).value(result.getNextAfter());
+        }
+        if (!result.getFacets().isEmpty()) {
+            writer.key(FACETS).object();
+            for (Map.Entry<String, Map<String, Long>> facet : result.getFacets().entrySet()) {
+                writer.key(facet.getKey()).object();
+                for (Map.Entry<String, Long> count : facet.getValue().entrySet()) {
+                    writer.key(count.getKey()).value(count.getValue().longValue());
+                }
+                writer.endObject();
+            }
+            writer.endObject();
+        }
+        writer.key(PRODUCTS).array();
+        for (Product product : result.getProducts()) {
+            product.writeJson(writer);
+        }
+        writer.endArray();
+        writer.endObject();
+    }
+}
@@ -2,12 +2,17 @@ package com.jcr.sling.junit.slingtest.query.add;
 
 import com.day.cq.search.Predicate;
 
+import java.util.Collections;
+import java.util.Set;
+
 public class ProductsSelector {
     private final String categoryPath;
     private long start;
     private long limit;
     private String sortAttribute = FglJcrProductProperties.EXT_ID;
     private String sortDirection = Predicate.SORT_ASCENDING;
+    private String after;
+    private Set<String> fields = Collections.emptySet();
 
     /**
      * Instantiates a new products selector.
@@ -98,4 +103,41 @@ public class ProductsSelector {
     public void setStart(final long start) {
         this.start = start;
     }
+
+    /**
+     * Gets the keyset pagination token.
+     *
+     * @return the token of the last product of the previous page
+     */
+    public String getAfter() {
+        return after;
+    }
+
+    /**
+     * Sets the keyset pagination token. When set, the start is ignored
+     * and the page begins right after the product the token was created for.
+     *
+     * @param after the token returned as {@link ProductSearchResult#getNextAfter()}
+     */
+    public void setAfter(final String after) {
+        this.after = after;
+    }
+
+    /**
+     * Gets the product fields to read.
+     *
+     * @return the fields, empty set means all the fields
+     */
+    public Set<String> getFields() {
+        return fields;
+    }
+
+    /**
+     * Sets the product fields to read, the rest of the product fields are left unset.
+     *
+     * @param fields the names of the product properties, see {@link FglJcrProductProperties}
+     */
+    public void setFields(final Set<String> fields) {
+        this.fields = fields;
+    }
 }
@@ -0,0 +1,104 @@
+package com.jcr.sling.junit.slingtest.query.add;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Optional;
+import com.google.common.base.Splitter;
+import com.google.common.collect.Lists;
+import org.apache.commons.lang.StringUtils;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.util.List;
+
+/**
+ * Cursor of the keyset pagination: the sort value and the ext id of the last product of a page.
+ * The ext id is unique per product and breaks ties between equal sort values. The sort value is null
+ * when the product does not have the sort property, the token then holds the ext id only.
+ */
+public final class SeekToken {
+
+    private static final String SEPARATOR = "~";
+
+    private final String sortValue;
+    private final String extId;
+
+    private SeekToken(final String sortValue, final String extId) {
+        this.sortValue = sortValue;
+        this.extId = extId;
+    }
+
+    /**
+     * Creates the token.
+     *
+     * @param sortValue the sort value of the last product, null if it does not have one
+     * @param extId     the ext id of the last product
+     * @return the seek token
+     */
+    public static SeekToken of(final String sortValue, final String extId) {
+        return new SeekToken(sortValue, extId);
+    }
+
+    /**
+     * Parses the token created by {@link #toString()}.
+     *
+     * @param token the token
+     * @return the seek token or absent if the token is blank or malformed
+     */
+    public static Optional<SeekToken> parse(final String token) {
+        Optional<SeekToken> result = Optional.absent();
+        if (StringUtils.isNotBlank(token)) {
+            List<String> parts = Lists.newArrayList(Splitter.on(SEPARATOR).split(token));
+            try {
+                if (parts.size() == 1) {
+                    result = Optional.of(new SeekToken(null, decode(parts.get(0))));
+                } else if (parts.size() == 2) {
+                    result = Optional.of(new SeekToken(decode(parts.get(0)), decode(parts.get(1))));
+                }
+            } catch (IllegalArgumentException e) {
+                result = Optional.absent();
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Gets the sort value.
+     *
+     * @return the sort value, null if the product does not have one
+     */
+    public String getSortValue() {
+        return sortValue;
+    }
+
+    /**
+     * Gets the ext id.
+     *
+     * @return the ext id
+     */
+    public String getExtId() {
+        return extId;
+    }
+
+    @Override
+    public String toString() {
+        // the encoded values never contain the separator
+        return sortValue == null ? encode(extId) : encode(sortValue) + SEPARATOR + encode(extId);
+    }
+
+    private static String encode(final String value) {
+        try {
+            return URLEncoder.encode(value, Charsets.UTF_8.name());
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String decode(final String value) {
+        try {
+            return URLDecoder.decode(value, Charsets.UTF_8.name());
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -1,20 +1,25 @@
 package com.jcr.sling.junit.slingtest.query.add;
 
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Iterables;
+import org.apache.commons.lang.StringUtils;
 import org.joda.time.DateTime;
-import org.joda.time.format.DateTimeFormat;
-import org.joda.time.format.ISODateTimeFormat;
 
+import javax.jcr.Value;
+import javax.jcr.ValueFactory;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 
 public class Sql2QueryBuilder {
 
     private static final String OPERATOR_EQUAL = " = ";
     private static final String OPERATOR_LIKE = " LIKE ";
+    private static final String DESCENDING = "DESC";
+    private static final String IS_NOT_NULL = " IS NOT NULL";
 
     private static final String BASE_PAGE_QUERY = "SELECT product.* FROM [cq:Page] as page"
             + " INNER JOIN [cq:PageContent] AS content ON ISCHILDNODE(content,page)"
@@ -22,33 +27,39 @@ public class Sql2QueryBuilder {
             + " WHERE NAME(product) = 'product'";
 
     private static final String BASE_PRODUCT_QUERY = "SELECT product.* FROM [nt:unstructured] AS product WHERE NAME(product) = 'product'";
-    private static final Map<Character, String> QUERY_STRING_CHARACTER_REPLACEMENT = new HashMap<Character, String>() {
-        {
-            put('"', "\"\\\"\"");
-            put('-', "\"\\-\"");
-            put('\\', "\"\\\\\"");
-            put('#', "\"\\#\"");
-            put('^', "\"\\^\"");
-            put('(', "\"\\(\"");
-            put(')', "\"\\)\"");
-            put('{', "\"\\{\"");
-            put('}', "\"\\}\"");
-            put(']', "\"\\]\"");
-            put('[', "\"\\[\"");
-            put('&', "\"\\&\"");
-            put('.', "\\.");
-            put('?', "\"\\?\"");
-            put('*', "\"\\*\"");
-            put('\'', "\\'\'");
-        }
-    };
+    // indexed by character, the single quote is additionally doubled when the value is inlined as a literal
+    private static final String[] QUERY_STRING_CHARACTER_REPLACEMENT = new String[128];
+
+    static {
+        QUERY_STRING_CHARACTER_REPLACEMENT['"'] = "\"\\\"\"";
+        QUERY_STRING_CHARACTER_REPLACEMENT['-'] = "\"\\-\"";
+        QUERY_STRING_CHARACTER_REPLACEMENT['\\'] = "\"\\\\\"";
+        QUERY_STRING_CHARACTER_REPLACEMENT['#'] = "\"\\#\"";
+        QUERY_STRING_CHARACTER_REPLACEMENT['^'] = "\"\\^\"";
+        QUERY_STRING_CHARACTER_REPLACEMENT['('] = "\"\\(\"";
+        QUERY_STRING_CHARACTER_REPLACEMENT[')'] = "\"\\)\"";
+        QUERY_STRING_CHARACTER_REPLACEMENT['{'] = "\"\\{\"";
+        QUERY_STRING_CHARACTER_REPLACEMENT['}'] = "\"\\}\"";
+        QUERY_STRING_CHARACTER_REPLACEMENT[']'] = "\"\\]\"";
+        QUERY_STRING_CHARACTER_REPLACEMENT['['] = "\"\\[\"";
+        QUERY_STRING_CHARACTER_REPLACEMENT['&'] = "\"\\&\"";
+        QUERY_STRING_CHARACTER_REPLACEMENT['.'] = "\\.";
+        QUERY_STRING_CHARACTER_REPLACEMENT['?'] = "\"\\?\"";
+        QUERY_STRING_CHARACTER_REPLACEMENT['*'] = "\"\\*\"";
+        QUERY_STRING_CHARACTER_REPLACEMENT['\''] = "\\'";
+    }
 
     private static final String SINGLE_QUOTE = "'";
     private static final String AND_PRODUCT = " AND product.";
     private static final String CLOSE_PART = "')";
     private static final String ESCAPED_SINGLE_QUOTE = "''";
+    private static final String BIND_VARIABLE_PREFIX = "v";
 
     private final StringBuilder queryBuilder;
+    private final Map<String, Object> bindValues = new LinkedHashMap<>();
+    private boolean bindVariables;
+    private int filterLength = -1;
+    private int filterBindValuesCount = -1;
 
     private Sql2QueryBuilder(final String basePageQuery) {
         queryBuilder = new StringBuilder(basePageQuery);
@@ -67,6 +78,19 @@ public class Sql2QueryBuilder {
         return builder;
     }
 
+    /**
+     * Creates the query of the product nodes right under the path, without their descendants.
+     *
+     * @param path the path
+     * @return the sql2 query builder
+     */
+    public static Sql2QueryBuilder createChildProductsQuery(final String path) {
+        Sql2QueryBuilder builder = new Sql2QueryBuilder(BASE_PRODUCT_QUERY);
+        builder.queryBuilder.append(" AND ISCHILDNODE(product, '").append(path).append(CLOSE_PART);
+
+        return builder;
+    }
+
     /**
      * Creates the category products query.
      *
@@ -80,6 +104,18 @@ public class Sql2QueryBuilder {
         return builder;
     }
 
+    /**
+     * Switches the builder to bind variables: values are emitted as {@code $v0}, {@code $v1}... placeholders
+     * instead of quoted literals, so the query string depends only on the shape of the criteria.
+     * Has to be called before any constraint is added. The paths are always inlined.
+     *
+     * @return the sql2 query builder
+     */
+    public Sql2QueryBuilder withBindVariables() {
+        bindVariables = true;
+        return this;
+    }
+
     /**
      * Adds the sorting clause.
      *
@@ -87,13 +123,57 @@ public class Sql2QueryBuilder {
      * @param sortOrder the sort order
      */
     public void addSortingClause(final Collection<String> sortBy, final Collection<String> sortOrder) {
+        markEndOfFilter();
         if (sortBy.isEmpty()) {
             queryBuilder.append(" ORDER BY SCORE(product)");
         } else {
-            queryBuilder.append(" ORDER BY product.").append(quote(Iterables.get(sortBy, 0)));
-            if (!sortOrder.isEmpty()) {
-                queryBuilder.append(" ").append(Iterables.get(sortOrder, 0));
+            String sortProperty = Iterables.get(sortBy, 0);
+            String direction = sortOrder.isEmpty() ? StringUtils.EMPTY : " " + Iterables.get(sortOrder, 0);
+            queryBuilder.append(" ORDER BY product.").append(quote(sortProperty)).append(direction);
+            // ext id is unique, so it makes the order stable for the keyset pagination
+            if (!FglJcrProductProperties.EXT_ID.equals(sortProperty)) {
+                queryBuilder.append(", product.").append(quote(FglJcrProductProperties.EXT_ID)).append(direction);
+            }
+        }
+    }
+
+    /**
+     * Adds the keyset constraint, so the query starts right after the product the token was created for.
+     * Has to be used together with the same sorting clause as the previous page. The repository orders the
+     * products without the sort property first in ascending order and last in descending order.
+     *
+     * @param sortBy    the sort by
+     * @param sortOrder the sort order
+     * @param token     the token of the last product of the previous page
+     */
+    public void addSeekConstraint(final String sortBy, final String sortOrder, final SeekToken token) {
+        markEndOfFilter();
+        String operator = DESCENDING.equalsIgnoreCase(sortOrder) ? " < " : " > ";
+        String extId = quote(FglJcrProductProperties.EXT_ID);
+        if (FglJcrProductProperties.EXT_ID.equals(sortBy)) {
+            queryBuilder.append(AND_PRODUCT).append(extId).append(operator).append(value(token.getExtId()));
+        } else if (token.getSortValue() == null) {
+            String property = quote(sortBy);
+            queryBuilder.append(" AND ((NOT product.").append(property).append(IS_NOT_NULL)
+                    .append(AND_PRODUCT).append(extId).append(operator).append(value(token.getExtId()))
+                    .append(")");
+            // the products having the property follow the ones without it in ascending order only
+            if (!DESCENDING.equalsIgnoreCase(sortOrder)) {
+                queryBuilder.append(" OR product.").append(property).append(IS_NOT_NULL);
+            }
+            queryBuilder.append(")");
+        } else {
+            String property = quote(sortBy);
+            String sortValue = value(token.getSortValue());
+            queryBuilder.append(" AND (product.").append(property).append(operator).append(sortValue)
+                    .append(" OR (product.").append(property).append(OPERATOR_EQUAL).append(sortValue)
+                    .append(AND_PRODUCT).append(extId).append(operator).append(value(token.getExtId()))
+                    .append(")");
+            // the products without the property follow the ones having it in descending order only
+            if (DESCENDING.equalsIgnoreCase(sortOrder)) {
+                queryBuilder.append(" OR NOT product.").append(property).append(IS_NOT_NULL);
             }
+            queryBuilder.append(")");
         }
     }
 
@@ -124,12 +204,28 @@ public class Sql2QueryBuilder {
     }
 
     /**
-     * Adds the numeric property constraint.
+     * Adds the numeric property constraint. A bound value which is not a number is bound as a string, so it
+     * matches no product instead of failing the search.
      *
      * @param values the values
      */
     public void addPublishStatusConstraint(final Collection<String> values) {
-        addRawPropertyConstraint(FglJcrProductProperties.STATUS, values);
+        Collection<String> statuses = values;
+        if (bindVariables) {
+            statuses = new ArrayList<>(values.size());
+            for (String value : values) {
+                statuses.add(bind(toNumberIfPossible(value)));
+            }
+        }
+        addRawPropertyConstraint(FglJcrProductProperties.STATUS, statuses);
+    }
+
+    private static Object toNumberIfPossible(final String value) {
+        try {
+            return Long.valueOf(value);
+        } catch (NumberFormatException e) {
+            return value;
+        }
     }
 
     /**
@@ -175,8 +271,8 @@ public class Sql2QueryBuilder {
             String firstValue = escapeIllegalJcrChars(Iterables.get(values, 0));
             // 'or contains' case was added to suite query which start's or finishes with single
             // quote words like "men's" or "women's"
-            queryBuilder.append(String.format(" AND (CONTAINS(product.%s, '*%s*') or (CONTAINS(product.%s, '%s')))",
-                    propertyName, firstValue, propertyName, firstValue));
+            queryBuilder.append(String.format(" AND (CONTAINS(product.%s, %s) or (CONTAINS(product.%s, %s)))",
+                    propertyName, value("*" + firstValue + "*"), propertyName, value(firstValue)));
         }
     }
 
@@ -189,6 +285,86 @@ public class Sql2QueryBuilder {
         return queryBuilder.toString();
     }
 
+    /**
+     * Gets the values of the bind variables of the query.
+     *
+     * @param valueFactory the value factory of the session the query is executed in
+     * @return the values by bind variable name, empty unless {@link #withBindVariables()} was called
+     */
+    public Map<String, Value> getBindValues(final ValueFactory valueFactory) {
+        return createValues(valueFactory, bindValues.size());
+    }
+
+    /**
+     * Gets the query which selects all the products matching the constraints, without the keyset
+     * constraint and the sorting clause.
+     *
+     * @return the count query
+     */
+    public String getCountQuery() {
+        return filterLength < 0 ? queryBuilder.toString() : queryBuilder.substring(0, filterLength);
+    }
+
+    /**
+     * Gets the values of the bind variables of the count query.
+     *
+     * @param valueFactory the value factory of the session the query is executed in
+     * @return the values by bind variable name
+     */
+    public Map<String, Value> getCountBindValues(final ValueFactory valueFactory) {
+        return createValues(valueFactory, filterBindValuesCount < 0 ? bindValues.size() : filterBindValuesCount);
+    }
+
+    /**
+     * Gets the normalized key of the search criteria: the count query together with its values.
+     *
+     * @return the count key
+     */
+    public List<Object> getCountKey() {
+        ImmutableList.Builder<Object> key = ImmutableList.<Object>builder().add(getCountQuery());
+        key.addAll(Iterables.limit(bindValues.values(),
+                filterBindValuesCount < 0 ? bindValues.size() : filterBindValuesCount));
+        return key.build();
+    }
+
+    /**
+     * Keyset constraint and sorting clause have to be added after all the other constraints.
+     */
+    private void markEndOfFilter() {
+        if (filterLength < 0) {
+            filterLength = queryBuilder.length();
+            filterBindValuesCount = bindValues.size();
+        }
+    }
+
+    private Map<String, Value> createValues(final ValueFactory valueFactory, final int count) {
+        Map<String, Value> values = new LinkedHashMap<>();
+        for (Map.Entry<String, Object> entry : Iterables.limit(bindValues.entrySet(), count)) {
+            Object value = entry.getValue();
+            if (value instanceof DateTime) {
+                values.put(entry.getKey(), valueFactory.createValue(((DateTime) value).toGregorianCalendar()));
+            } else if (value instanceof Long) {
+                values.put(entry.getKey(), valueFactory.createValue((Long) value));
+            } else {
+                values.put(entry.getKey(), valueFactory.createValue((String) value));
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Gets the string value as a bind variable or as a quoted literal, depending on the mode.
+     */
+    private String value(final String value) {
+        return bindVariables ? bind(value) : quote(value);
+    }
+
+    private String bind(final Object value) {
+        String name = BIND_VARIABLE_PREFIX + bindValues.size();
+        bindValues.put(name, value);
+        return "$" + name;
+    }
+
     private void addRawPropertyConstraint(final String property, final Collection<String> values, final String operator) {
         if (!values.isEmpty()) {
             queryBuilder.append(" AND (");
@@ -208,17 +384,20 @@ public class Sql2QueryBuilder {
         addRawPropertyConstraint(property, values, OPERATOR_EQUAL);
     }
 
-    private static Collection<String> quoteValues(final Collection<String> values) {
+    private Collection<String> quoteValues(final Collection<String> values) {
         Collection<String> quoted = new ArrayList<>(values.size());
         for (String value : values) {
-            quoted.add(quote(value));
+            quoted.add(value(value));
         }
 
         return quoted;
     }
 
-    private static String castAsDate(final String dateString) {
-        return "CAST('" + toIsoDateTimeFormat(dateString) + "' AS DATE)";
+    private String castAsDate(final String dateString) {
+        if (bindVariables) {
+            return bind(DateFormats.parseQueryDateTime(dateString));
+        }
+        return "CAST('" + DateFormats.toIsoDateTime(dateString) + "' AS DATE)";
     }
 
     /**
@@ -228,11 +407,6 @@ public class Sql2QueryBuilder {
         return SINGLE_QUOTE + input.replace(SINGLE_QUOTE, ESCAPED_SINGLE_QUOTE) + SINGLE_QUOTE;
     }
 
-    private static String toIsoDateTimeFormat(final String date) {
-        DateTime dateTime = DateTimeFormat.forPattern("yyyy-MM-dd'T'HH:mm:ss").parseDateTime(date);
-        return ISODateTimeFormat.dateTime().print(dateTime);
-    }
-
     /**
      * Within the search literal instances of double quote (“"”) and hyphen
      * (“-”) must be escaped with a backslash (“\”) Backslash itself must therefore also be escaped,
@@ -241,9 +415,11 @@ public class Sql2QueryBuilder {
     private static String escapeIllegalJcrChars(final String input) {
         StringBuilder builder = new StringBuilder(input.length() * 2);
         for (int i = 0; i < input.length(); ++i) {
-            Character character = input.charAt(i);
-            if (QUERY_STRING_CHARACTER_REPLACEMENT.containsKey(character)) {
-                builder.append(QUERY_STRING_CHARACTER_REPLACEMENT.get(character));
+            char character = input.charAt(i);
+            String replacement = character < QUERY_STRING_CHARACTER_REPLACEMENT.length
+                    ? QUERY_STRING_CHARACTER_REPLACEMENT[character] : null;
+            if (replacement != null) {
+                builder.append(replacement);
             } else {
                 builder.append(character);
             }
@@ -0,0 +1,575 @@
+package com.jcr.sling.junit.slingtest.query.index;
+
+import com.google.common.collect.ImmutableSet;
+import com.jcr.sling.junit.slingtest.query.add.FglJcrProductProperties;
+import org.apache.jackrabbit.commons.JcrUtils;
+
+import javax.jcr.Node;
+import javax.jcr.RepositoryException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Calendar;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Columnar in-memory index of the source catalog products. Every product node takes a slot, the values
+ * of the products are kept in primitive arrays by slot, the strings used for filtering are dictionary
+ * encoded and every facet value has a bitset of the slots having it. Written by one thread, read concurrently.
+ */
+public class ProductIndex {
+
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final long NO_VALUE = Long.MIN_VALUE;
+    private static final Set<String> SORTABLE_PROPERTIES = ImmutableSet.of(FglJcrProductProperties.EXT_ID,
+            FglJcrProductProperties.STATUS, FglJcrProductProperties.CREATION_DATE,
+            FglJcrProductProperties.ECOMM_LAST_MODIFIED_DATE);
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<String, Integer> slots = new HashMap<>();
+    private final Deque<Integer> freeSlots = new ArrayDeque<>();
+    private final BitSet live = new BitSet();
+
+    private final StringDictionary brands = new StringDictionary();
+    private final StringDictionary vendors = new StringDictionary();
+    private final StringDictionary fulfillerNames = new StringDictionary();
+    private final Map<Integer, BitSet> brandSlots = new HashMap<>();
+    private final Map<Integer, BitSet> vendorSlots = new HashMap<>();
+    private final Map<Integer, BitSet> fulfillerNameSlots = new HashMap<>();
+    private final Map<Long, BitSet> publishStatusSlots = new HashMap<>();
+    private final Map<Boolean, BitSet> sellableSlots = new HashMap<>();
+
+    private int capacity;
+    private String[] paths;
+    private String[] extIds;
+    private int[] brandCodes;
+    private int[] vendorCodes;
+    private int[] fulfillerNameCodes;
+    private long[] publishStatuses;
+    private long[] creationDates;
+    private long[] lastModifiedDates;
+
+    /**
+     * Instantiates a new empty product index.
+     */
+    public ProductIndex() {
+        allocate(INITIAL_CAPACITY);
+    }
+
+    /**
+     * Checks if the index can sort by the property.
+     *
+     * @param property the property
+     * @return true, if sortable
+     */
+    public static boolean isSortable(final String property) {
+        return SORTABLE_PROPERTIES.contains(property);
+    }
+
+    /**
+     * Adds the product node to the index or updates it when it is already indexed.
+     *
+     * @param productNode the product node
+     * @throws RepositoryException if the node cannot be read
+     */
+    public void put(final Node productNode) throws RepositoryException {
+        String path = productNode.getPath();
+        String extId = JcrUtils.getStringProperty(productNode, FglJcrProductProperties.EXT_ID, "");
+        String brand = JcrUtils.getStringProperty(productNode, FglJcrProductProperties.ECOMM_BRAND, null);
+        String vendor = JcrUtils.getStringProperty(productNode, FglJcrProductProperties.ECOMM_VENDOR, null);
+        String fulfillerName = JcrUtils.getStringProperty(productNode, FglJcrProductProperties.ECOMM_FULFILLER_NAME,
+                null);
+        long publishStatus = JcrUtils.getLongProperty(productNode, FglJcrProductProperties.STATUS, NO_VALUE);
+        Boolean sellable = productNode.hasProperty(FglJcrProductProperties.SELLABLE)
+                ? productNode.getProperty(FglJcrProductProperties.SELLABLE).getBoolean() : null;
+        long creationDate = toTime(JcrUtils.getDateProperty(productNode, FglJcrProductProperties.CREATION_DATE, null));
+        long lastModifiedDate = toTime(JcrUtils.getDateProperty(productNode,
+                FglJcrProductProperties.ECOMM_LAST_MODIFIED_DATE, null));
+
+        lock.writeLock().lock();
+        try {
+            Integer slot = slots.get(path);
+            if (slot == null) {
+                slot = allocateSlot();
+                slots.put(path, slot);
+            } else {
+                clearSlot(slot);
+            }
+
+            paths[slot] = path;
+            extIds[slot] = extId;
+            brandCodes[slot] = encode(brands, brandSlots, brand, slot);
+            vendorCodes[slot] = encode(vendors, vendorSlots, vendor, slot);
+            fulfillerNameCodes[slot] = encode(fulfillerNames, fulfillerNameSlots, fulfillerName, slot);
+            publishStatuses[slot] = publishStatus;
+            if (publishStatus != NO_VALUE) {
+                facet(publishStatusSlots, publishStatus).set(slot);
+            }
+            if (sellable != null) {
+                facet(sellableSlots, sellable).set(slot);
+            }
+            creationDates[slot] = creationDate;
+            lastModifiedDates[slot] = lastModifiedDate;
+            live.set(slot);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes the product node with the path and all the product nodes below it.
+     *
+     * @param path the path
+     */
+    public void remove(final String path) {
+        String descendantsPrefix = path + "/";
+        lock.writeLock().lock();
+        try {
+            for (Iterator<Map.Entry<String, Integer>> iterator = slots.entrySet().iterator(); iterator.hasNext(); ) {
+                Map.Entry<String, Integer> entry = iterator.next();
+                if (entry.getKey().equals(path) || entry.getKey().startsWith(descendantsPrefix)) {
+                    clearSlot(entry.getValue());
+                    freeSlots.push(entry.getValue());
+                    iterator.remove();
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes all the products.
+     */
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            slots.clear();
+            freeSlots.clear();
+            live.clear();
+            brands.clear();
+            vendors.clear();
+            fulfillerNames.clear();
+            brandSlots.clear();
+            vendorSlots.clear();
+            fulfillerNameSlots.clear();
+            publishStatusSlots.clear();
+            sellableSlots.clear();
+            allocate(INITIAL_CAPACITY);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Gets the number of indexed products.
+     *
+     * @return the size
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return slots.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Searches the products matching the query.
+     *
+     * @param query the query
+     * @return the ext ids of the requested page and the total
+     */
+    public Page search(final ProductIndexQuery query) {
+        List<String> page = null;
+        SortKeys sortKeys = null;
+        int total;
+        int from;
+        int to;
+        Map<String, Map<String, Long>> facets;
+        lock.readLock().lock();
+        try {
+            BitSet matches = (BitSet) live.clone();
+            filterByPath(matches, query.getPath());
+            filterByExtIds(matches, query.getExtIds());
+            filterByCodes(matches, brands, brandSlots, query.getBrands());
+            filterByCodes(matches, vendors, vendorSlots, query.getVendors());
+            filterByCodes(matches, fulfillerNames, fulfillerNameSlots, query.getFulfillerNames());
+            filterByFacet(matches, publishStatusSlots, query.getPublishStatuses());
+            filterByFacet(matches, sellableSlots, query.getSellable());
+            filterByRange(matches, creationDates, query.getCreationDateLowerBound(),
+                    query.getCreationDateUpperBound());
+            filterByRange(matches, lastModifiedDates, query.getLastModifiedDateLowerBound(),
+                    query.getLastModifiedDateUpperBound());
+
+            int[] matchingSlots = toSlots(matches);
+            total = matchingSlots.length;
+            from = (int) Math.min(query.getOffset(), total);
+            to = query.getLimit() > 0 ? (int) Math.min((long) from + query.getLimit(), total) : total;
+            if (query.getSortProperty() == null) {
+                page = new ArrayList<>(to - from);
+                for (int i = from; i < to; i++) {
+                    page.add(extIds[matchingSlots[i]]);
+                }
+            } else {
+                sortKeys = new SortKeys(getLongColumn(query.getSortProperty()), extIds, matchingSlots,
+                        query.isDescending());
+            }
+            facets = query.isFacets() ? countFacets(matches) : Collections.<String, Map<String, Long>>emptyMap();
+        } finally {
+            lock.readLock().unlock();
+        }
+        if (sortKeys != null) {
+            page = sortKeys.getPage(from, to);
+        }
+        return new Page(page, total, facets);
+    }
+
+    private void filterByPath(final BitSet matches, final String path) {
+        if (path != null) {
+            String descendantsPrefix = path + "/";
+            for (int slot = matches.nextSetBit(0); slot >= 0; slot = matches.nextSetBit(slot + 1)) {
+                if (!paths[slot].startsWith(descendantsPrefix)) {
+                    matches.clear(slot);
+                }
+            }
+        }
+    }
+
+    private void filterByExtIds(final BitSet matches, final Collection<String> values) {
+        if (!values.isEmpty()) {
+            for (int slot = matches.nextSetBit(0); slot >= 0; slot = matches.nextSetBit(slot + 1)) {
+                if (!values.contains(extIds[slot])) {
+                    matches.clear(slot);
+                }
+            }
+        }
+    }
+
+    private static void filterByCodes(final BitSet matches, final StringDictionary dictionary,
+                                      final Map<Integer, BitSet> facets, final Collection<String> values) {
+        if (!values.isEmpty()) {
+            List<Integer> codes = new ArrayList<>(values.size());
+            for (String value : values) {
+                codes.add(dictionary.lookup(value));
+            }
+            filterByFacet(matches, facets, codes);
+        }
+    }
+
+    private static <K> void filterByFacet(final BitSet matches, final Map<K, BitSet> facets,
+                                          final Collection<K> values) {
+        if (!values.isEmpty()) {
+            BitSet any = new BitSet();
+            for (K value : values) {
+                BitSet slots = facets.get(value);
+                if (slots != null) {
+                    any.or(slots);
+                }
+            }
+            matches.and(any);
+        }
+    }
+
+    private static void filterByRange(final BitSet matches, final long[] column, final Long lowerBound,
+                                      final Long upperBound) {
+        if (lowerBound != null || upperBound != null) {
+            long lower = lowerBound == null ? NO_VALUE + 1 : lowerBound;
+            long upper = upperBound == null ? Long.MAX_VALUE : upperBound;
+            for (int slot = matches.nextSetBit(0); slot >= 0; slot = matches.nextSetBit(slot + 1)) {
+                // products without the date never match, as in the repository query
+                if (column[slot] == NO_VALUE || column[slot] < lower || column[slot] > upper) {
+                    matches.clear(slot);
+                }
+            }
+        }
+    }
+
+    /**
+     * Counts the facet values of the matching slots with one int counter per dictionary code.
+     */
+    private Map<String, Map<String, Long>> countFacets(final BitSet matches) {
+        int[] brandCounts = new int[brands.size()];
+        int[] vendorCounts = new int[vendors.size()];
+        int[] fulfillerNameCounts = new int[fulfillerNames.size()];
+        Map<Long, int[]> publishStatusCounts = new HashMap<>();
+        for (int slot = matches.nextSetBit(0); slot >= 0; slot = matches.nextSetBit(slot + 1)) {
+            count(brandCounts, brandCodes[slot]);
+            count(vendorCounts, vendorCodes[slot]);
+            count(fulfillerNameCounts, fulfillerNameCodes[slot]);
+            if (publishStatuses[slot] != NO_VALUE) {
+                int[] counter = publishStatusCounts.get(publishStatuses[slot]);
+                if (counter == null) {
+                    counter = new int[1];
+                    publishStatusCounts.put(publishStatuses[slot], counter);
+                }
+                counter[0]++;
+            }
+        }
+
+        Map<String, Long> statusFacet = new HashMap<>();
+        for (Map.Entry<Long, int[]> counter : publishStatusCounts.entrySet()) {
+            statusFacet.put(String.valueOf(counter.getKey()), (long) counter.getValue()[0]);
+        }
+        Map<String, Map<String, Long>> facets = new LinkedHashMap<>();
+        facets.put(FglJcrProductProperties.ECOMM_BRAND, toFacet(brands, brandCounts));
+        facets.put(FglJcrProductProperties.ECOMM_VENDOR, toFacet(vendors, vendorCounts));
+        facets.put(FglJcrProductProperties.STATUS, statusFacet);
+        facets.put(FglJcrProductProperties.ECOMM_FULFILLER_NAME, toFacet(fulfillerNames, fulfillerNameCounts));
+        return facets;
+    }
+
+    private static void count(final int[] counts, final int code) {
+        if (code != StringDictionary.NOT_FOUND) {
+            counts[code]++;
+        }
+    }
+
+    private static Map<String, Long> toFacet(final StringDictionary dictionary, final int[] counts) {
+        Map<String, Long> facet = new HashMap<>();
+        for (int code = 0; code < counts.length; code++) {
+            if (counts[code] > 0) {
+                facet.put(dictionary.decode(code), (long) counts[code]);
+            }
+        }
+        return facet;
+    }
+
+    private static int[] toSlots(final BitSet matches) {
+        int[] result = new int[matches.cardinality()];
+        int i = 0;
+        for (int slot = matches.nextSetBit(0); slot >= 0; slot = matches.nextSetBit(slot + 1)) {
+            result[i++] = slot;
+        }
+        return result;
+    }
+
+    private long[] getLongColumn(final String property) {
+        switch (property) {
+            case FglJcrProductProperties.STATUS:
+                return publishStatuses;
+            case FglJcrProductProperties.CREATION_DATE:
+                return creationDates;
+            case FglJcrProductProperties.ECOMM_LAST_MODIFIED_DATE:
+                return lastModifiedDates;
+            default:
+                return null;
+        }
+    }
+
+    private static int encode(final StringDictionary dictionary, final Map<Integer, BitSet> facets,
+                              final String value, final int slot) {
+        if (value == null) {
+            return StringDictionary.NOT_FOUND;
+        }
+        int code = dictionary.encode(value);
+        facet(facets, code).set(slot);
+        return code;
+    }
+
+    private static <K> BitSet facet(final Map<K, BitSet> facets, final K value) {
+        BitSet slots = facets.get(value);
+        if (slots == null) {
+            slots = new BitSet();
+            facets.put(value, slots);
+        }
+        return slots;
+    }
+
+    private static <K> void clearFacet(final Map<K, BitSet> facets, final K value, final int slot) {
+        BitSet slots = facets.get(value);
+        if (slots != null) {
+            slots.clear(slot);
+        }
+    }
+
+    private void clearSlot(final int slot) {
+        live.clear(slot);
+        clearFacet(brandSlots, brandCodes[slot], slot);
+        clearFacet(vendorSlots, vendorCodes[slot], slot);
+        clearFacet(fulfillerNameSlots, fulfillerNameCodes[slot], slot);
+        clearFacet(publishStatusSlots, publishStatuses[slot], slot);
+        for (BitSet sellable : sellableSlots.values()) {
+            sellable.clear(slot);
+        }
+        paths[slot] = null;
+        extIds[slot] = null;
+    }
+
+    private int allocateSlot() {
+        if (!freeSlots.isEmpty()) {
+            return freeSlots.pop();
+        }
+        int slot = slots.size();
+        if (slot == capacity) {
+            grow(capacity * 2);
+        }
+        return slot;
+    }
+
+    private void allocate(final int newCapacity) {
+        capacity = newCapacity;
+        paths = new String[newCapacity];
+        extIds = new String[newCapacity];
+        brandCodes = new int[newCapacity];
+        vendorCodes = new int[newCapacity];
+        fulfillerNameCodes = new int[newCapacity];
+        publishStatuses = new long[newCapacity];
+        creationDates = new long[newCapacity];
+        lastModifiedDates = new long[newCapacity];
+    }
+
+    private void grow(final int newCapacity) {
+        capacity = newCapacity;
+        paths = Arrays.copyOf(paths, newCapacity);
+        extIds = Arrays.copyOf(extIds, newCapacity);
+        brandCodes = Arrays.copyOf(brandCodes, newCapacity);
+        vendorCodes = Arrays.copyOf(vendorCodes, newCapacity);
+        fulfillerNameCodes = Arrays.copyOf(fulfillerNameCodes, newCapacity);
+        publishStatuses = Arrays.copyOf(publishStatuses, newCapacity);
+        creationDates = Arrays.copyOf(creationDates, newCapacity);
+        lastModifiedDates = Arrays.copyOf(lastModifiedDates, newCapacity);
+    }
+
+    private static long toTime(final Calendar calendar) {
+        return calendar == null ? NO_VALUE : calendar.getTimeInMillis();
+    }
+
+    /**
+     * Page of the index search result.
+     */
+    public static final class Page {
+
+        private final List<String> extIds;
+        private final long total;
+        private final Map<String, Map<String, Long>> facets;
+
+        private Page(final List<String> extIds, final long total, final Map<String, Map<String, Long>> facets) {
+            this.extIds = Collections.unmodifiableList(extIds);
+            this.total = total;
+            this.facets = Collections.unmodifiableMap(facets);
+        }
+
+        /**
+         * Gets the ext ids of the products of the page, in the requested order.
+         *
+         * @return the ext ids
+         */
+        public List<String> getExtIds() {
+            return extIds;
+        }
+
+        /**
+         * Gets the number of all the matching products.
+         *
+         * @return the total
+         */
+        public long getTotal() {
+            return total;
+        }
+
+        /**
+         * Gets the facet counts of all the matching products, if requested.
+         *
+         * @return the number of products by value by property, empty if not requested
+         */
+        public Map<String, Map<String, Long>> getFacets() {
+            return facets;
+        }
+    }
+
+    /**
+     * The sort values of the matching products, copied out of the columns under the read lock, so that
+     * they are sorted after releasing it. Orders as the repository query does: by the property, then by
+     * ext id in the same direction.
+     */
+    private static final class SortKeys {
+
+        private static final int INSERTION_SORT_THRESHOLD = 16;
+
+        private final long[] values;
+        private final String[] extIds;
+        private final int direction;
+
+        private SortKeys(final long[] column, final String[] extIdColumn, final int[] slots,
+                         final boolean descending) {
+            values = column == null ? null : new long[slots.length];
+            extIds = new String[slots.length];
+            for (int i = 0; i < slots.length; i++) {
+                if (values != null) {
+                    values[i] = column[slots[i]];
+                }
+                extIds[i] = extIdColumn[slots[i]];
+            }
+            direction = descending ? -1 : 1;
+        }
+
+        private List<String> getPage(final int from, final int to) {
+            int[] order = new int[extIds.length];
+            for (int i = 0; i < order.length; i++) {
+                order[i] = i;
+            }
+            sort(order, new int[order.length], 0, order.length);
+
+            List<String> page = new ArrayList<>(to - from);
+            for (int i = from; i < to; i++) {
+                page.add(extIds[order[i]]);
+            }
+            return page;
+        }
+
+        /**
+         * Merge sorts the positions of the range, on primitive ints rather than boxed slots.
+         */
+        private void sort(final int[] order, final int[] buffer, final int from, final int to) {
+            if (to - from <= INSERTION_SORT_THRESHOLD) {
+                for (int i = from + 1; i < to; i++) {
+                    int position = order[i];
+                    int j = i - 1;
+                    while (j >= from && compare(order[j], position) > 0) {
+                        order[j + 1] = order[j];
+                        j--;
+                    }
+                    order[j + 1] = position;
+                }
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            sort(order, buffer, from, middle);
+            sort(order, buffer, middle, to);
+            if (compare(order[middle - 1], order[middle]) <= 0) {
+                return;
+            }
+            System.arraycopy(order, from, buffer, from, to - from);
+            int left = from;
+            int right = middle;
+            for (int i = from; i < to; i++) {
+                if (right >= to || (left < middle && compare(buffer[left], buffer[right]) <= 0)) {
+                    order[i] = buffer[left++];
+                } else {
+                    order[i] = buffer[right++];
+                }
+            }
+        }
+
+        private int compare(final int first, final int second) {
+            int result = values == null ? 0 : Long.compare(values[first], values[second]);
+            if (result == 0) {
+                result = extIds[first].compareTo(extIds[second]);
+            }
+            return direction * result;
+        }
+    }
+}
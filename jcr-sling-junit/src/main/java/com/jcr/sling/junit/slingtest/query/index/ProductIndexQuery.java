@@ -0,0 +1,316 @@
+package com.jcr.sling.junit.slingtest.query.index;
+
+import java.util.Collection;
+import java.util.Collections;
+
+/**
+ * Search criteria of the {@link ProductIndex}. Empty collections and null bounds do not filter,
+ * values of one collection are OR-ed, the different criteria are AND-ed.
+ */
+public class ProductIndexQuery {
+
+    private String path;
+    private Collection<String> extIds = Collections.emptySet();
+    private Collection<String> brands = Collections.emptySet();
+    private Collection<String> vendors = Collections.emptySet();
+    private Collection<String> fulfillerNames = Collections.emptySet();
+    private Collection<Long> publishStatuses = Collections.emptySet();
+    private Collection<Boolean> sellable = Collections.emptySet();
+    private Long creationDateLowerBound;
+    private Long creationDateUpperBound;
+    private Long lastModifiedDateLowerBound;
+    private Long lastModifiedDateUpperBound;
+    private String sortProperty;
+    private boolean descending;
+    private long offset;
+    private int limit;
+    private boolean facets;
+
+    /**
+     * Gets the path the products have to be descendants of.
+     *
+     * @return the path
+     */
+    public String getPath() {
+        return path;
+    }
+
+    /**
+     * Sets the path the products have to be descendants of.
+     *
+     * @param path the new path
+     */
+    public void setPath(final String path) {
+        this.path = path;
+    }
+
+    /**
+     * Gets the ext ids.
+     *
+     * @return the ext ids
+     */
+    public Collection<String> getExtIds() {
+        return extIds;
+    }
+
+    /**
+     * Sets the ext ids.
+     *
+     * @param extIds the new ext ids
+     */
+    public void setExtIds(final Collection<String> extIds) {
+        this.extIds = extIds;
+    }
+
+    /**
+     * Gets the brands.
+     *
+     * @return the brands
+     */
+    public Collection<String> getBrands() {
+        return brands;
+    }
+
+    /**
+     * Sets the brands.
+     *
+     * @param brands the new brands
+     */
+    public void setBrands(final Collection<String> brands) {
+        this.brands = brands;
+    }
+
+    /**
+     * Gets the vendors.
+     *
+     * @return the vendors
+     */
+    public Collection<String> getVendors() {
+        return vendors;
+    }
+
+    /**
+     * Sets the vendors.
+     *
+     * @param vendors the new vendors
+     */
+    public void setVendors(final Collection<String> vendors) {
+        this.vendors = vendors;
+    }
+
+    /**
+     * Gets the fulfiller names.
+     *
+     * @return the fulfiller names
+     */
+    public Collection<String> getFulfillerNames() {
+        return fulfillerNames;
+    }
+
+    /**
+     * Sets the fulfiller names.
+     *
+     * @param fulfillerNames the new fulfiller names
+     */
+    public void setFulfillerNames(final Collection<String> fulfillerNames) {
+        this.fulfillerNames = fulfillerNames;
+    }
+
+    /**
+     * Gets the publish statuses.
+     *
+     * @return the publish statuses
+     */
+    public Collection<Long> getPublishStatuses() {
+        return publishStatuses;
+    }
+
+    /**
+     * Sets the publish statuses.
+     *
+     * @param publishStatuses the new publish statuses
+     */
+    public void setPublishStatuses(final Collection<Long> publishStatuses) {
+        this.publishStatuses = publishStatuses;
+    }
+
+    /**
+     * Gets the sellable flags.
+     *
+     * @return the sellable flags
+     */
+    public Collection<Boolean> getSellable() {
+        return sellable;
+    }
+
+    /**
+     * Sets the sellable flags.
+     *
+     * @param sellable the new sellable flags
+     */
+    public void setSellable(final Collection<Boolean> sellable) {
+        this.sellable = sellable;
+    }
+
+    /**
+     * Gets the inclusive lower bound of the creation date.
+     *
+     * @return the time in milliseconds or null
+     */
+    public Long getCreationDateLowerBound() {
+        return creationDateLowerBound;
+    }
+
+    /**
+     * Sets the inclusive lower bound of the creation date.
+     *
+     * @param creationDateLowerBound the time in milliseconds
+     */
+    public void setCreationDateLowerBound(final Long creationDateLowerBound) {
+        this.creationDateLowerBound = creationDateLowerBound;
+    }
+
+    /**
+     * Gets the inclusive upper bound of the creation date.
+     *
+     * @return the time in milliseconds or null
+     */
+    public Long getCreationDateUpperBound() {
+        return creationDateUpperBound;
+    }
+
+    /**
+     * Sets the inclusive upper bound of the creation date.
+     *
+     * @param creationDateUpperBound the time in milliseconds
+     */
+    public void setCreationDateUpperBound(final Long creationDateUpperBound) {
+        this.creationDateUpperBound = creationDateUpperBound;
+    }
+
+    /**
+     * Gets the inclusive lower bound of the last modified date.
+     *
+     * @return the time in milliseconds or null
+     */
+    public Long getLastModifiedDateLowerBound() {
+        return lastModifiedDateLowerBound;
+    }
+
+    /**
+     * Sets the inclusive lower bound of the last modified date.
+     *
+     * @param lastModifiedDateLowerBound the time in milliseconds
+     */
+    public void setLastModifiedDateLowerBound(final Long lastModifiedDateLowerBound) {
+        this.lastModifiedDateLowerBound = lastModifiedDateLowerBound;
+    }
+
+    /**
+     * Gets the inclusive upper bound of the last modified date.
+     *
+     * @return the time in milliseconds or null
+     */
+    public Long getLastModifiedDateUpperBound() {
+        return lastModifiedDateUpperBound;
+    }
+
+    /**
+     * Sets the inclusive upper bound of the last modified date.
+     *
+     * @param lastModifiedDateUpperBound the time in milliseconds
+     */
+    public void setLastModifiedDateUpperBound(final Long lastModifiedDateUpperBound) {
+        this.lastModifiedDateUpperBound = lastModifiedDateUpperBound;
+    }
+
+    /**
+     * Gets the sort property.
+     *
+     * @return the sort property, null keeps the index order
+     */
+    public String getSortProperty() {
+        return sortProperty;
+    }
+
+    /**
+     * Sets the sort property, see {@link ProductIndex#isSortable(String)}.
+     *
+     * @param sortProperty the new sort property
+     */
+    public void setSortProperty(final String sortProperty) {
+        this.sortProperty = sortProperty;
+    }
+
+    /**
+     * Checks if the sort order is descending.
+     *
+     * @return true, if descending
+     */
+    public boolean isDescending() {
+        return descending;
+    }
+
+    /**
+     * Sets the sort order.
+     *
+     * @param descending the new sort order
+     */
+    public void setDescending(final boolean descending) {
+        this.descending = descending;
+    }
+
+    /**
+     * Gets the offset.
+     *
+     * @return the offset
+     */
+    public long getOffset() {
+        return offset;
+    }
+
+    /**
+     * Sets the offset.
+     *
+     * @param offset the new offset
+     */
+    public void setOffset(final long offset) {
+        this.offset = offset;
+    }
+
+    /**
+     * Gets the limit.
+     *
+     * @return the limit
+     */
+    public int getLimit() {
+        return limit;
+    }
+
+    /**
+     * Sets the limit.
+     *
+     * @param limit the new limit
+     */
+    public void setLimit(final int limit) {
+        this.limit = limit;
+    }
+
+    /**
+     * Checks if the facets of the matching products are counted.
+     *
+     * @return true, if the facets are counted
+     */
+    public boolean isFacets() {
+        return facets;
+    }
+
+    /**
+     * Sets whether the facets of the matching products are counted.
+     *
+     * @param facets the new facets flag
+     */
+    public void setFacets(final boolean facets) {
+        this.facets = facets;
+    }
+}
@@ -0,0 +1,302 @@
+package com.jcr.sling.junit.slingtest.query.index;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.jcr.sling.junit.slingtest.constants.FglPathConstants;
+import com.jcr.sling.junit.slingtest.holders.SessionHolder;
+import com.jcr.sling.junit.slingtest.query.add.Sql2QueryBuilder;
+import org.apache.jackrabbit.util.Text;
+import org.apache.sling.jcr.api.SlingRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.jcr.NodeIterator;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+import javax.jcr.observation.Event;
+import javax.jcr.observation.EventIterator;
+import javax.jcr.observation.EventListener;
+import javax.jcr.query.Query;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps a {@link ProductIndex} current with the source catalog. The index is built once on start, then the
+ * paths of the changed product nodes are collected from the observation events, repeated edits of a path
+ * are coalesced, and the paths are re-read in micro-batches. The build and all the batches run on one writer
+ * thread, so the index has a single writer.
+ */
+public class ProductIndexUpdater implements EventListener {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ProductIndexUpdater.class);
+    private static final int EVENT_TYPES = Event.NODE_ADDED | Event.NODE_REMOVED | Event.PROPERTY_ADDED
+            | Event.PROPERTY_CHANGED | Event.PROPERTY_REMOVED;
+
+    private final SlingRepository repository;
+    private final ProductIndex index;
+    private final long batchDelay;
+    private final int maxBatchSize;
+    private final ScheduledExecutorService writer = Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactoryBuilder().setNameFormat("product-index-writer").setDaemon(true).build());
+
+    // path of the changed node -> time of its first not yet applied change
+    private final ConcurrentMap<String, Long> pending = new ConcurrentHashMap<>();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+    private final AtomicLong batchCount = new AtomicLong();
+    private final AtomicLong appliedCount = new AtomicLong();
+    private volatile int lastBatchSize;
+    private volatile long lastBatchLag;
+    private volatile boolean ready;
+    private Session observationSession;
+
+    /**
+     * Instantiates a new product index updater.
+     *
+     * @param repository   the repository
+     * @param index        the index to keep current
+     * @param batchDelay   for how many milliseconds the changes are collected before they are applied
+     * @param maxBatchSize the max number of paths applied in one batch
+     */
+    public ProductIndexUpdater(final SlingRepository repository, final ProductIndex index, final long batchDelay,
+                               final int maxBatchSize) {
+        this.repository = repository;
+        this.index = index;
+        this.batchDelay = batchDelay;
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    /**
+     * Starts listening and builds the index. Listening starts before the build, so the changes made
+     * meanwhile are applied right after it.
+     *
+     * @throws RepositoryException if the listener cannot be registered
+     */
+    public void start() throws RepositoryException {
+        observationSession = repository.loginAdministrative(null);
+        observationSession.getWorkspace().getObservationManager().addEventListener(this, EVENT_TYPES,
+                FglPathConstants.SOURCE_JCR_PATH, true, null, null, false);
+
+        writer.execute(new Runnable() {
+            @Override
+            public void run() {
+                rebuild();
+            }
+        });
+    }
+
+    /**
+     * Stops listening and drops the pending changes.
+     */
+    public void stop() {
+        ready = false;
+        if (observationSession != null) {
+            try {
+                observationSession.getWorkspace().getObservationManager().removeEventListener(this);
+            } catch (RepositoryException e) {
+                LOG.warn("Can not remove the product index listener: ", e);
+            }
+            observationSession.logout();
+            observationSession = null;
+        }
+        writer.shutdownNow();
+        pending.clear();
+    }
+
+    /**
+     * Checks if the index is built.
+     *
+     * @return true, if ready
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Gets for how long the oldest not yet applied change waits.
+     *
+     * @return the lag in milliseconds, 0 when all the changes are applied
+     */
+    public long getLag() {
+        long oldest = Long.MAX_VALUE;
+        for (Long time : pending.values()) {
+            oldest = Math.min(oldest, time);
+        }
+        return oldest == Long.MAX_VALUE ? 0 : System.currentTimeMillis() - oldest;
+    }
+
+    /**
+     * Gets for how long the oldest change of the last batch waited before it was applied.
+     *
+     * @return the lag in milliseconds
+     */
+    public long getLastBatchLag() {
+        return lastBatchLag;
+    }
+
+    /**
+     * Gets the number of paths applied in the last batch.
+     *
+     * @return the batch size
+     */
+    public int getLastBatchSize() {
+        return lastBatchSize;
+    }
+
+    /**
+     * Gets the number of paths waiting for the next batch.
+     *
+     * @return the pending count
+     */
+    public int getPendingCount() {
+        return pending.size();
+    }
+
+    /**
+     * Gets the number of applied batches.
+     *
+     * @return the batch count
+     */
+    public long getBatchCount() {
+        return batchCount.get();
+    }
+
+    /**
+     * Gets the number of applied paths, after coalescing.
+     *
+     * @return the applied count
+     */
+    public long getAppliedCount() {
+        return appliedCount.get();
+    }
+
+    /**
+     * Collects the paths of the changed product nodes and schedules a batch.
+     */
+    @Override
+    public void onEvent(final EventIterator events) {
+        long now = System.currentTimeMillis();
+        while (events.hasNext()) {
+            Event event = events.nextEvent();
+            try {
+                String path = event.getPath();
+                if (event.getType() == Event.NODE_ADDED || event.getType() == Event.NODE_REMOVED) {
+                    pending.putIfAbsent(path, now);
+                } else if (isProductNode(Text.getRelativeParent(path, 1))) {
+                    pending.putIfAbsent(Text.getRelativeParent(path, 1), now);
+                }
+            } catch (RepositoryException e) {
+                LOG.warn("Can not read the product index event: ", e);
+            }
+        }
+        scheduleFlush(batchDelay);
+    }
+
+    private void scheduleFlush(final long delay) {
+        if (!pending.isEmpty() && flushScheduled.compareAndSet(false, true)) {
+            try {
+                writer.schedule(new Runnable() {
+                    @Override
+                    public void run() {
+                        flush();
+                    }
+                }, delay, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                LOG.debug("Product index updater is stopped");
+            }
+        }
+    }
+
+    private void flush() {
+        flushScheduled.set(false);
+        SortedMap<String, Long> batch = new TreeMap<>();
+        for (Iterator<Map.Entry<String, Long>> iterator = pending.entrySet().iterator();
+             iterator.hasNext() && batch.size() < maxBatchSize; ) {
+            Map.Entry<String, Long> change = iterator.next();
+            batch.put(change.getKey(), change.getValue());
+            iterator.remove();
+        }
+        if (!batch.isEmpty()) {
+            apply(batch);
+        }
+        // a big import is applied batch after batch without waiting
+        scheduleFlush(0);
+    }
+
+    private void apply(final SortedMap<String, Long> batch) {
+        long oldest = Long.MAX_VALUE;
+        try (SessionHolder sessionHolder = new SessionHolder(repository)) {
+            Session session = sessionHolder.getSession();
+            for (Map.Entry<String, Long> change : batch.entrySet()) {
+                oldest = Math.min(oldest, change.getValue());
+                // the subtree of a changed ancestor is re-read anyway
+                if (!hasAncestorIn(batch, change.getKey())) {
+                    refresh(session, change.getKey());
+                }
+            }
+        } catch (RepositoryException e) {
+            LOG.error("Can not update the product index: ", e);
+        }
+
+        lastBatchSize = batch.size();
+        lastBatchLag = System.currentTimeMillis() - oldest;
+        batchCount.incrementAndGet();
+        appliedCount.addAndGet(batch.size());
+        LOG.debug("Applied {} changes to the product index, lag {} ms", lastBatchSize, lastBatchLag);
+    }
+
+    private void refresh(final Session session, final String path) throws RepositoryException {
+        if (!session.nodeExists(path)) {
+            index.remove(path);
+        } else if (isProductNode(path)) {
+            index.put(session.getNode(path));
+        } else {
+            // a moved, copied or replaced subtree raises events for its root only
+            index.remove(path);
+            indexSubtree(session, path);
+        }
+    }
+
+    private void rebuild() {
+        long start = System.currentTimeMillis();
+        try (SessionHolder sessionHolder = new SessionHolder(repository)) {
+            index.clear();
+            indexSubtree(sessionHolder.getSession(), FglPathConstants.SOURCE_JCR_PATH);
+            ready = true;
+            LOG.info("Product index of {} products built in {} ms", index.size(),
+                    System.currentTimeMillis() - start);
+        } catch (RepositoryException e) {
+            LOG.error("Can not build the product index: ", e);
+        }
+    }
+
+    private void indexSubtree(final Session session, final String path) throws RepositoryException {
+        Query query = session.getWorkspace().getQueryManager().createQuery(
+                Sql2QueryBuilder.createProductSearchQuery(path).getQuery(), Query.JCR_SQL2);
+        for (NodeIterator nodes = query.execute().getNodes(); nodes.hasNext(); ) {
+            index.put(nodes.nextNode());
+        }
+    }
+
+    private static boolean hasAncestorIn(final SortedMap<String, Long> batch, final String path) {
+        for (String ancestor = Text.getRelativeParent(path, 1); !ancestor.isEmpty() && !"/".equals(ancestor);
+             ancestor = Text.getRelativeParent(ancestor, 1)) {
+            if (batch.containsKey(ancestor)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isProductNode(final String path) {
+        return path.endsWith(FglPathConstants.PATH_SEPARATOR + FglPathConstants.SOURCE_SUB_NODE_REL_PATH);
+    }
+}
@@ -0,0 +1,72 @@
+package com.jcr.sling.junit.slingtest.query.index;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Dictionary encoding of a string column: every distinct value gets a dense int code.
+ * Codes are never reused, so a code stays valid for the lifetime of the dictionary. Not thread-safe.
+ */
+final class StringDictionary {
+
+    static final int NOT_FOUND = -1;
+
+    private final Map<String, Integer> codes = new HashMap<>();
+    private final List<String> values = new ArrayList<>();
+
+    /**
+     * Gets the code of the value, adding the value when it is not known yet.
+     *
+     * @param value the value
+     * @return the code
+     */
+    int encode(final String value) {
+        Integer code = codes.get(value);
+        if (code == null) {
+            code = values.size();
+            codes.put(value, code);
+            values.add(value);
+        }
+        return code;
+    }
+
+    /**
+     * Gets the code of the value.
+     *
+     * @param value the value
+     * @return the code or {@link #NOT_FOUND}
+     */
+    int lookup(final String value) {
+        Integer code = codes.get(value);
+        return code == null ? NOT_FOUND : code;
+    }
+
+    /**
+     * Gets the value of the code.
+     *
+     * @param code the code
+     * @return the value
+     */
+    String decode(final int code) {
+        return values.get(code);
+    }
+
+    /**
+     * Gets the number of values.
+     *
+     * @return the size
+     */
+    int size() {
+        return values.size();
+    }
+
+    /**
+     * Removes all the values.
+     */
+    void clear() {
+        codes.clear();
+        values.clear();
+    }
+}
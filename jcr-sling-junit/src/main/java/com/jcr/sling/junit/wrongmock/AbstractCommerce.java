@@ -16,7 +16,33 @@ public abstract class AbstractCommerce {
     protected final ValueMap properties;
 
     AbstractCommerce(final Resource resource) {
-        this.properties = new ValueMapDecorator(new HashMap<>(resource.adaptTo(ValueMap.class)));
+        this(resource, false);
+    }
+
+    /**
+     * Instantiates a new model reading the properties of the resource.
+     *
+     * @param resource    the resource
+     * @param readThrough whether the properties are read from the resource value map on access instead of
+     *                    being copied, for the models not outliving the resource resolver
+     */
+    AbstractCommerce(final Resource resource, final boolean readThrough) {
+        this.properties = readProperties(resource, readThrough);
+    }
+
+    /**
+     * Gets the properties of the resource, either the value map itself or a copy of it.
+     *
+     * @param resource    the resource
+     * @param readThrough whether the value map of the resource is returned without copying
+     * @return the properties
+     */
+    static ValueMap readProperties(final Resource resource, final boolean readThrough) {
+        ValueMap valueMap = resource.adaptTo(ValueMap.class);
+        if (readThrough) {
+            return valueMap == null ? ValueMap.EMPTY : valueMap;
+        }
+        return new ValueMapDecorator(new HashMap<>(valueMap));
     }
 
     /**
@@ -3,15 +3,22 @@ package com.jcr.sling.junit.wrongmock;
 import com.jcr.sling.junit.slingtest.query.add.FglJcrProductProperties;
 import org.apache.sling.api.resource.Resource;
 import org.apache.sling.api.resource.ValueMap;
-import org.apache.sling.api.wrappers.ValueMapDecorator;
-
-import java.util.HashMap;
 
 public class Barcode {
     private final ValueMap properties;
 
     public Barcode(final Resource resource) {
-        this.properties = new ValueMapDecorator(new HashMap<>(resource.adaptTo(ValueMap.class)));
+        this(resource, false);
+    }
+
+    /**
+     * Instantiates a new barcode.
+     *
+     * @param resource    the resource
+     * @param readThrough whether the properties are read from the resource value map instead of a copy
+     */
+    public Barcode(final Resource resource, final boolean readThrough) {
+        this.properties = AbstractCommerce.readProperties(resource, readThrough);
     }
 
     /**
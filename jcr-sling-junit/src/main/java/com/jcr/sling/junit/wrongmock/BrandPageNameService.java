@@ -0,0 +1,15 @@
+package com.jcr.sling.junit.wrongmock;
+
+/**
+ * The interface Brand page name service.
+ */
+public interface BrandPageNameService {
+
+    /**
+     * Return the name of the brand page tagged with the brand.
+     *
+     * @param brandName - brand name as in the brand tag, case-insensitive
+     * @return name of the brand page or null if no brand page has the brand
+     */
+    String getBrandPageName(String brandName);
+}
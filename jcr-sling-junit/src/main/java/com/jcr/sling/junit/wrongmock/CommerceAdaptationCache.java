@@ -0,0 +1,109 @@
+package com.jcr.sling.junit.wrongmock;
+
+import org.apache.sling.api.resource.Resource;
+
+import javax.servlet.ServletRequest;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Request scoped cache of the {@link Product} and {@link Sku} models by resource path, so the components of
+ * one page share one product graph instead of building it per component. Lives in a request attribute and
+ * is dropped with the request, so the models read the resource value maps instead of copying them. The hit
+ * rate is counted over all the requests.
+ */
+public final class CommerceAdaptationCache {
+
+    private static final String REQUEST_ATTRIBUTE = CommerceAdaptationCache.class.getName();
+
+    private static final AtomicLong HITS = new AtomicLong();
+    private static final AtomicLong MISSES = new AtomicLong();
+
+    private final Map<String, Product> products = new HashMap<>();
+    private final Map<String, Sku> skus = new HashMap<>();
+
+    private CommerceAdaptationCache() {
+    }
+
+    /**
+     * Gets the cache of the request, creating it on first use.
+     *
+     * @param request the request
+     * @return the cache
+     */
+    public static CommerceAdaptationCache of(final ServletRequest request) {
+        CommerceAdaptationCache cache = (CommerceAdaptationCache) request.getAttribute(REQUEST_ATTRIBUTE);
+        if (cache == null) {
+            cache = new CommerceAdaptationCache();
+            request.setAttribute(REQUEST_ATTRIBUTE, cache);
+        }
+        return cache;
+    }
+
+    /**
+     * Gets the product of the resource, built on the first call for its path. Its skus are taken from
+     * this cache as well.
+     *
+     * @param resource the product resource
+     * @return the product
+     */
+    public Product getProduct(final Resource resource) {
+        Product product = products.get(resource.getPath());
+        if (product == null) {
+            MISSES.incrementAndGet();
+            product = Product.builder().newProduct(resource).setReadThrough(true).setAdaptationCache(this).build();
+            products.put(resource.getPath(), product);
+        } else {
+            HITS.incrementAndGet();
+        }
+        return product;
+    }
+
+    /**
+     * Gets the sku of the resource, built on the first call for its path.
+     *
+     * @param resource the sku resource
+     * @return the sku
+     */
+    public Sku getSku(final Resource resource) {
+        Sku sku = skus.get(resource.getPath());
+        if (sku == null) {
+            MISSES.incrementAndGet();
+            sku = new Sku(resource, true);
+            skus.put(resource.getPath(), sku);
+        } else {
+            HITS.incrementAndGet();
+        }
+        return sku;
+    }
+
+    /**
+     * Gets the number of lookups answered from a cache since startup.
+     *
+     * @return the hit count
+     */
+    public static long getHitCount() {
+        return HITS.get();
+    }
+
+    /**
+     * Gets the number of lookups which built the model since startup.
+     *
+     * @return the miss count
+     */
+    public static long getMissCount() {
+        return MISSES.get();
+    }
+
+    /**
+     * Gets the share of the lookups answered from a cache since startup.
+     *
+     * @return the hit rate between 0 and 1, 0 without lookups
+     */
+    public static double getHitRate() {
+        long hits = HITS.get();
+        long lookups = hits + MISSES.get();
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+}
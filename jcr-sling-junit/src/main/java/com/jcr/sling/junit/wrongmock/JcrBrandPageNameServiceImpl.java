@@ -0,0 +1,28 @@
+package com.jcr.sling.junit.wrongmock;
+
+import com.jcr.sling.junit.slingtest.BrandCatalog;
+import com.jcr.sling.junit.slingtest.BrandSnapshot;
+import org.apache.felix.scr.annotations.Component;
+import org.apache.felix.scr.annotations.Reference;
+import org.apache.felix.scr.annotations.Service;
+
+/**
+ * Maps the brands to the names of their brand pages with the current {@link BrandSnapshot}. The brand
+ * catalog rebuilds the snapshot when a brand page changes.
+ */
+@Component
+@Service(BrandPageNameService.class)
+public class JcrBrandPageNameServiceImpl implements BrandPageNameService {
+
+    @Reference
+    private BrandCatalog brandCatalog;
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getBrandPageName(final String brandName) {
+        final BrandSnapshot snapshot = BrandSnapshot.of(brandCatalog);
+        return snapshot != null ? snapshot.getBrandPageName(brandName) : null;
+    }
+}
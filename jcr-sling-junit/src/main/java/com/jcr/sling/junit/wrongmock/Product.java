@@ -1,19 +1,23 @@
 package com.jcr.sling.junit.wrongmock;
 
+import com.day.cq.commons.jcr.JcrConstants;
 import com.day.cq.wcm.api.NameConstants;
 import com.google.common.base.CharMatcher;
 import com.google.common.base.Optional;
 import com.google.common.base.Splitter;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.Weigher;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
+import com.jcr.sling.junit.slingtest.query.add.HtmlSanitizer;
 import org.apache.commons.lang.ArrayUtils;
 import org.apache.commons.lang.StringUtils;
 import org.apache.commons.lang.math.NumberUtils;
 import org.apache.sling.api.resource.Resource;
 import org.apache.sling.commons.osgi.PropertiesUtil;
-import org.jsoup.Jsoup;
 import org.jsoup.safety.Whitelist;
 
 import java.util.Calendar;
@@ -39,20 +43,43 @@ public class Product extends AbstractCommerce {
     private static final String GLYPHS_TO_REMOVE = "·•";
     private static final String PATTERN = "\r?\n";
 
+    // characters of the sanitized bullet lists kept in memory, about 8 MB
+    private static final long BULLET_LISTS_WEIGHT = 4 * 1024 * 1024;
+    // product path, locale, field and both last modified times -> sanitized bullet list
+    private static final Cache<List<Object>, List<String>> BULLET_LISTS = CacheBuilder.newBuilder()
+            .maximumWeight(BULLET_LISTS_WEIGHT)
+            .weigher(new Weigher<List<Object>, List<String>>() {
+                @Override
+                public int weigh(final List<Object> key, final List<String> bullets) {
+                    int weight = key.get(0).toString().length();
+                    for (String bullet : bullets) {
+                        weight += bullet.length();
+                    }
+                    return weight;
+                }
+            })
+            .build();
+
     private final String path;
-    private final List<Sku> skus;
-    private final Set<String> skuCodes;
+    // kept by the read-through products only, the copies do not use the resolver after they are built
+    private final Resource resource;
+    private final boolean readThrough;
+    private final CommerceAdaptationCache adaptationCache;
+    // read-through products load them on the first access of a sku, most pages only read the product properties
+    private volatile Variants variants;
     private final Map<String, String> swatches;
     private final Map<String, String> s7Swatches;
     private final List<String> productPageUrls;
 
     private Product(final Builder builder) {
-        super(builder.resource);
+        super(builder.resource, builder.readThrough);
         this.path = builder.resource.getPath();
+        this.readThrough = builder.readThrough;
+        this.resource = readThrough ? builder.resource : null;
+        this.adaptationCache = builder.adaptationCache;
+        this.variants = readThrough ? builder.variants : builder.getVariants();
         this.swatches = builder.swatches;
         this.s7Swatches = builder.swatchesS7;
-        this.skus = builder.skus;
-        this.skuCodes = builder.skuCodes;
         this.productPageUrls = builder.productPageUrls;
     }
 
@@ -82,7 +109,7 @@ public class Product extends AbstractCommerce {
      * @return the sku codes
      */
     public Set<String> getSkuCodes() {
-        return skuCodes;
+        return getVariants().skuCodes;
     }
 
     /**
@@ -159,7 +186,7 @@ public class Product extends AbstractCommerce {
      * @return bullet features
      */
     public List<String> getBulletFeatures(final Locale locale) {
-        return createBulletList(getFeatures(locale));
+        return getBulletList(locale, FEATURES, getFeatures(locale));
     }
 
     /**
@@ -181,7 +208,7 @@ public class Product extends AbstractCommerce {
      * @return bullet list of description
      */
     public List<String> getBulletLongDescription(final Locale locale) {
-        return createBulletList(getLongDescription(locale));
+        return getBulletList(locale, LONG_DESCRIPTION, getLongDescription(locale));
     }
 
     /**
@@ -203,7 +230,7 @@ public class Product extends AbstractCommerce {
      * @return bullet specifications
      */
     public List<String> getBulletSpecifications(final Locale locale) {
-        return createBulletList(getSpecifications(locale));
+        return getBulletList(locale, SPECIFICATION, getSpecifications(locale));
     }
 
     /**
@@ -270,7 +297,7 @@ public class Product extends AbstractCommerce {
      * @return iterator
      */
     public List<Sku> getSkus() {
-        return skus;
+        return getVariants().skus;
     }
 
     /**
@@ -291,7 +318,7 @@ public class Product extends AbstractCommerce {
      */
     public Optional<Sku> getSku(final String code) {
         Optional<Sku> result = Optional.absent();
-        for (Sku sku : skus) {
+        for (Sku sku : getSkus()) {
             if (sku.getCode().equalsIgnoreCase(code)) {
                 result = Optional.of(sku);
                 break;
@@ -435,12 +462,51 @@ public class Product extends AbstractCommerce {
         return PropertiesUtil.toString(properties.get(PRIME_CASE_PACK_ID, String.class), StringUtils.EMPTY);
     }
 
+    private Variants getVariants() {
+        Variants result = variants;
+        if (result == null) {
+            synchronized (this) {
+                result = variants;
+                if (result == null) {
+                    result = Variants.load(resource, readThrough, adaptationCache);
+                    variants = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Gets the bullet list of the field from the cache, sanitizing the text on a miss. The import and the
+     * authoring update different last modified times, so the key has both. The products without any last
+     * modified time are sanitized on every call, as their changes could not be told apart.
+     */
+    private List<String> getBulletList(final Locale locale, final String propertyName, final String field) {
+        Calendar ecommLastModified = properties.get(ECOMM_LAST_MODIFIED_DATE, Calendar.class);
+        Calendar lastModified = properties.get(JcrConstants.JCR_LASTMODIFIED, Calendar.class);
+        if (ecommLastModified == null && lastModified == null) {
+            return createBulletList(field);
+        }
+        List<Object> key = ImmutableList.<Object>of(path, locale, propertyName, toMillis(ecommLastModified),
+                toMillis(lastModified));
+        List<String> result = BULLET_LISTS.getIfPresent(key);
+        if (result == null) {
+            result = createBulletList(field);
+            BULLET_LISTS.put(key, result);
+        }
+        return result;
+    }
+
+    private static long toMillis(final Calendar calendar) {
+        return calendar == null ? Long.MIN_VALUE : calendar.getTimeInMillis();
+    }
+
     private List<String> createBulletList(final String field) {
-        List<String> resultList = Lists.newArrayList();
+        List<String> resultList = Collections.emptyList();
         String fieldHtml = StringUtils.stripToEmpty(field);
         if (StringUtils.isNotEmpty(fieldHtml)) {
             fieldHtml = clearGlyphs(fieldHtml);
-            resultList = clearHtml(fieldHtml);
+            resultList = ImmutableList.copyOf(clearHtml(fieldHtml));
         }
         return resultList;
     }
@@ -449,7 +515,7 @@ public class Product extends AbstractCommerce {
         final Iterable<String> list = Splitter.onPattern(PATTERN).trimResults().omitEmptyStrings().split(inHtml);
         final List<String> result = Lists.newArrayList();
         for (String row : list) {
-            String trimmed = Jsoup.clean(row, WHITELIST);
+            String trimmed = HtmlSanitizer.clean(row, WHITELIST);
             if (!StringUtils.isWhitespace(trimmed)) {
                 result.add(trimmed);
             }
@@ -480,8 +546,9 @@ public class Product extends AbstractCommerce {
     public static class Builder {
 
         private Resource resource;
-        private final List<Sku> skus = Lists.newArrayList();
-        private final Set<String> skuCodes = Sets.newHashSet();
+        private boolean readThrough;
+        private CommerceAdaptationCache adaptationCache;
+        private Variants variants;
 
         private List<String> productPageUrls;
 
@@ -497,8 +564,8 @@ public class Product extends AbstractCommerce {
          */
         public Product.Builder newProduct(final Resource resource) {
             this.resource = resource;
+            this.variants = null;
             this.swatches = this.swatchesS7 = Collections.emptyMap();
-            aggregateSkuAndCodes(resource);
 
             return this;
         }
@@ -509,7 +576,7 @@ public class Product extends AbstractCommerce {
          * @return SKU IDs set
          */
         public Set<String> getSkuCodes() {
-            return skuCodes;
+            return getVariants().skuCodes;
         }
 
         /**
@@ -518,7 +585,35 @@ public class Product extends AbstractCommerce {
          * @return SKUs list
          */
         public List<Sku> getSkus() {
-            return skus;
+            return getVariants().skus;
+        }
+
+        /**
+         * Sets whether the product and its skus read the resource value maps instead of copying them. Only
+         * for the products not outliving the resource resolver, like the ones cached per request.
+         *
+         * @param readThrough
+         *            whether the properties are read through
+         * @return the product. builder
+         */
+        public Product.Builder setReadThrough(final boolean readThrough) {
+            this.readThrough = readThrough;
+            this.variants = null;
+            return this;
+        }
+
+        /**
+         * Sets the request cache the skus are taken from, so the sku models are shared with the other
+         * components of the request. The skus of the cache read the resource value maps through.
+         *
+         * @param adaptationCache
+         *            the cache of the request, null builds the skus for the product only
+         * @return the product. builder
+         */
+        public Product.Builder setAdaptationCache(final CommerceAdaptationCache adaptationCache) {
+            this.adaptationCache = adaptationCache;
+            this.variants = null;
+            return this;
         }
 
         /**
@@ -566,10 +661,36 @@ public class Product extends AbstractCommerce {
             return new Product(this);
         }
 
-        private void aggregateSkuAndCodes(final Resource resource) {
+        private Variants getVariants() {
+            if (variants == null) {
+                variants = Variants.load(resource, readThrough, adaptationCache);
+            }
+            return variants;
+        }
+    }
+
+    /**
+     * The skus of a product sorted by color, with their codes.
+     */
+    private static final class Variants {
+
+        private final List<Sku> skus;
+        private final Set<String> skuCodes;
+
+        private Variants(final List<Sku> skus, final Set<String> skuCodes) {
+            this.skus = skus;
+            this.skuCodes = skuCodes;
+        }
+
+        private static Variants load(final Resource resource, final boolean readThrough,
+                                     final CommerceAdaptationCache adaptationCache) {
+            final List<Sku> skus = Lists.newArrayList();
+            final Set<String> skuCodes = Sets.newHashSet();
             final Iterator<Resource> resourceIterator = resource.listChildren();
             while (resourceIterator.hasNext()) {
-                final Sku sku = new Sku(resourceIterator.next());
+                final Resource skuResource = resourceIterator.next();
+                final Sku sku = adaptationCache != null ? adaptationCache.getSku(skuResource)
+                        : new Sku(skuResource, readThrough);
                 skus.add(sku);
                 skuCodes.add(sku.getCode());
             }
@@ -579,6 +700,7 @@ public class Product extends AbstractCommerce {
                     return NumberUtils.toInt(left.getColor()) - NumberUtils.toInt(right.getColor());
                 }
             });
+            return new Variants(skus, skuCodes);
         }
     }
 
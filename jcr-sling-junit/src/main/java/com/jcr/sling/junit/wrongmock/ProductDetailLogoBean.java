@@ -13,6 +13,7 @@ import javax.jcr.NodeIterator;
 import javax.jcr.Property;
 import javax.jcr.RepositoryException;
 import javax.jcr.Value;
+import javax.servlet.ServletRequest;
 
 import static com.jcr.sling.junit.slingtest.query.add.FglJcrProductProperties.*;
 
@@ -43,6 +44,35 @@ public class ProductDetailLogoBean {
     //@Inject
     public ProductDetailLogoBean(final Page currentPage, final ResourceResolver resourceResolver,
                                  final BrandLogoService brandLogoService) {
+        this(currentPage, resourceResolver, brandLogoService, null);
+    }
+
+    /**
+     * BrandLogo information bean looking the brand page up in the brand page name service.
+     *
+     * @param currentPage          the current page
+     * @param resourceResolver     the resource resolver
+     * @param brandLogoService     logo service
+     * @param brandPageNameService brand page name service, null searches the brand pages
+     */
+    public ProductDetailLogoBean(final Page currentPage, final ResourceResolver resourceResolver,
+                                 final BrandLogoService brandLogoService,
+                                 final BrandPageNameService brandPageNameService) {
+        this(currentPage, resourceResolver, brandLogoService, brandPageNameService, null);
+    }
+
+    /**
+     * BrandLogo information bean sharing the product model with the other components of the request.
+     *
+     * @param currentPage          the current page
+     * @param resourceResolver     the resource resolver
+     * @param brandLogoService     logo service
+     * @param brandPageNameService brand page name service, null searches the brand pages
+     * @param request              the current request, null adapts the product resource
+     */
+    public ProductDetailLogoBean(final Page currentPage, final ResourceResolver resourceResolver,
+                                 final BrandLogoService brandLogoService,
+                                 final BrandPageNameService brandPageNameService, final ServletRequest request) {
         Resource currentPageResource = currentPage.getContentResource();
 
         if (isProductDetailPage(currentPageResource)) {
@@ -50,13 +80,17 @@ public class ProductDetailLogoBean {
             final String pathToProduct = currentPage.getProperties().get(PRODUCT_MASTER, String.class);
             final Resource productResource = resourceResolver.resolve(pathToProduct);
             if (productResource.isResourceType(COMMERCE_COMPONENTS_PRODUCT)) {
-                final Product product = productResource.adaptTo(Product.class);
+                final Product product = request != null
+                        ? CommerceAdaptationCache.of(request).getProduct(productResource)
+                        : productResource.adaptTo(Product.class);
                 final String rootPath = LanguageUtil.getLanguageRoot(currentPage.getPath());
                 final String brand = product.getBrand();
                 String correctBrandName = brand;
                 try {
                     long startTime = System.currentTimeMillis();
-                    String tmpBrandName = getCorrectBrandName(resourceResolver, brand);
+                    String tmpBrandName = brandPageNameService != null
+                            ? brandPageNameService.getBrandPageName(brand)
+                            : getCorrectBrandName(resourceResolver, brand);
                     if (StringUtils.isNotBlank(tmpBrandName)) {
                         correctBrandName = tmpBrandName.toLowerCase();
                         long endTime = System.currentTimeMillis();
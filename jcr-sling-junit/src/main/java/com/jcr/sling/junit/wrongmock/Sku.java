@@ -12,7 +12,11 @@ import static com.jcr.sling.junit.slingtest.query.add.FglJcrProductProperties.*;
 
 public class Sku extends AbstractCommerce {
 
-    private final List<Barcode> barcodes;
+    // kept by the read-through skus only, the copies do not use the resolver after they are built
+    private final Resource resource;
+    private final boolean readThrough;
+    // read-through skus load them on the first access, most pages never read the barcodes
+    private volatile List<Barcode> barcodes;
 
     /**
      * Instantiates a new sku.
@@ -21,8 +25,20 @@ public class Sku extends AbstractCommerce {
      *
      */
     Sku(final Resource resource) {
-        super(resource);
-        barcodes = collectBarCodes(resource);
+        this(resource, false);
+    }
+
+    /**
+     * Instantiates a new sku.
+     *
+     * @param resource    the resource
+     * @param readThrough whether the sku and its barcodes read the resource value maps instead of copies
+     */
+    Sku(final Resource resource, final boolean readThrough) {
+        super(resource, readThrough);
+        this.resource = readThrough ? resource : null;
+        this.readThrough = readThrough;
+        this.barcodes = readThrough ? null : collectBarCodes(resource, false);
     }
 
     /**
@@ -122,15 +138,26 @@ public class Sku extends AbstractCommerce {
      * @return barcode object
      */
     public List<Barcode> getBarcodes() {
-        return barcodes;
+        List<Barcode> result = barcodes;
+        if (result == null) {
+            synchronized (this) {
+                result = barcodes;
+                if (result == null) {
+                    result = collectBarCodes(resource, readThrough);
+                    barcodes = result;
+                }
+            }
+        }
+        return result;
     }
 
-    private List<Barcode> collectBarCodes(final Resource resource) {
+    private static List<Barcode> collectBarCodes(final Resource resource, final boolean readThrough) {
         List<Barcode> result = Lists.newArrayList();
         Iterator<Resource> barcodeResources = resource.listChildren();
 
         while (barcodeResources.hasNext()) {
-            result.add(barcodeResources.next().adaptTo(Barcode.class));
+            Resource barcodeResource = barcodeResources.next();
+            result.add(readThrough ? new Barcode(barcodeResource, true) : barcodeResource.adaptTo(Barcode.class));
         }
         return result;
     }
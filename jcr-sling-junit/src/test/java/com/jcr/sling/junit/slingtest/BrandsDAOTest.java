@@ -85,6 +85,9 @@ public class BrandsDAOTest {
     @Mock
     private com.day.cq.tagging.Tag tag;
 
+    @Mock
+    private BrandCatalog brandCatalog;
+
     @Before
     public void setUp() throws Exception {
         session = RepositoryProvider.instance().getRepository().loginAdministrative(null);
@@ -180,6 +183,24 @@ public class BrandsDAOTest {
         assertNull("Columbia should not have aggregated data", brands.get(1).getDescription());
     }
 
+    @Test
+    public void shouldReadBrandsFromCatalogSnapshot() throws RepositoryException {
+        given(brandCatalog.getSnapshot()).willReturn(BrandSnapshot.builder()
+                .add("COLUMBIA", "Columbia", null, null)
+                .add("ADIDAS", "Adidas", ADIDAS_BRAND_DESCRIPTION, SCENE7_IMAGE_LINK)
+                .build());
+
+        List<Brand> brands = jcrBrandsDAO.getBrands();
+        List<Brand> allBrands = jcrBrandsDAO.getAllBrands(PREDEFINED_BRANDS, ImmutableList.of("ADIDAS"));
+
+        assertEquals("Brands size should be as expected", 2, brands.size());
+        assertEquals("Image link should be as expected", SCENE7_IMAGE_LINK, brands.get(1).getImage());
+        assertEquals("Titles should be sorted", "Adidas", jcrBrandsDAO.getSortedBrandTagsTitles().iterator().next());
+        assertEquals("Brands size should be as expected", 2, allBrands.size());
+        assertTrue("Adidas should be subscribed", allBrands.get(0).isSubscribed());
+        Mockito.verifyZeroInteractions(resourceResolverFactory, mockSlingRepository);
+    }
+
     // this suit never test real RepositoryException, exception on getting session - incorrect,
     // because on runtime
     // you can get RepositoryException just on work with repository
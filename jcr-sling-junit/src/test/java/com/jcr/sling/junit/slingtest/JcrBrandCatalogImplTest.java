@@ -0,0 +1,116 @@
+package com.jcr.sling.junit.slingtest;
+
+import com.day.cq.commons.jcr.JcrUtil;
+import com.google.common.collect.ImmutableMap;
+import org.apache.jackrabbit.JcrConstants;
+import org.apache.sling.commons.testing.jcr.RepositoryProvider;
+import org.apache.sling.commons.testing.jcr.RepositoryUtil;
+import org.apache.sling.jcr.api.SlingRepository;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.mockito.stubbing.Answer;
+
+import javax.jcr.Node;
+import javax.jcr.Property;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.BDDMockito.given;
+
+@RunWith(MockitoJUnitRunner.class)
+public class JcrBrandCatalogImplTest {
+
+    private static final String PATH_TO_BRAND_TAGS = "/etc/tags/sportchek/brands";
+    private static final String ADIDAS_PAGE = "/content/sportchek/en/brands/adidas/jcr:content";
+    private static final String SCENE7_IMAGE_LINK = "//s7d2.scene7.com/is/image/FGL/new-balance-logo";
+    private static final long TIMEOUT = 5000;
+
+    @Mock
+    private SlingRepository repository;
+
+    @InjectMocks
+    private final JcrBrandCatalogImpl brandCatalog = new JcrBrandCatalogImpl();
+
+    private Session session;
+    private Node brandTagsNode;
+
+    @Before
+    public void setUp() throws Exception {
+        session = RepositoryProvider.instance().getRepository().loginAdministrative(null);
+        RepositoryUtil.registerNodeType(session, getClass().getClassLoader().getResourceAsStream("cq.cnd"));
+        brandTagsNode = JcrUtil.createPath(PATH_TO_BRAND_TAGS, "sling:Folder", session);
+        brandTagsNode.addNode("COLUMBIA", "cq:Tag").setProperty(Property.JCR_TITLE, "Columbia");
+        brandTagsNode.addNode("ADIDAS", "cq:Tag").setProperty(Property.JCR_TITLE, "Adidas");
+        JcrUtil.createPath(ADIDAS_PAGE, "cq:PageContent", session).addNode("brandLogo", JcrConstants.NT_UNSTRUCTURED)
+                .setProperty("s7_imageReference", SCENE7_IMAGE_LINK);
+        session.save();
+
+        given(repository.loginAdministrative(null)).willAnswer(new Answer<Session>() {
+            @Override
+            public Session answer(final InvocationOnMock invocation) throws RepositoryException {
+                return RepositoryProvider.instance().getRepository().loginAdministrative(null);
+            }
+        });
+    }
+
+    @After
+    public void tearDown() throws RepositoryException {
+        brandCatalog.deactivate();
+        try {
+            brandTagsNode.remove();
+            session.getNode(ADIDAS_PAGE).getParent().remove();
+            session.save();
+        } finally {
+            session.logout();
+        }
+    }
+
+    @Test
+    public void shouldLoadBrandsWithBrandPageData() throws RepositoryException {
+        brandCatalog.activate(ImmutableMap.<String, Object>of());
+
+        List<Brand> brands = brandCatalog.getSnapshot().getBrands();
+
+        assertEquals(2, brands.size());
+        assertEquals("ADIDAS", brands.get(1).getId());
+        assertEquals(SCENE7_IMAGE_LINK, brands.get(1).getImage());
+        assertNull(brands.get(0).getImage());
+    }
+
+    @Test
+    public void shouldMapBrandsToBrandPages() throws RepositoryException {
+        session.getNode(ADIDAS_PAGE).setProperty("brand", new String[] {"sportchek:brands/adidas"});
+        session.save();
+        brandCatalog.activate(ImmutableMap.<String, Object>of());
+
+        assertEquals("adidas", brandCatalog.getSnapshot().getBrandPageName("ADIDAS"));
+        assertNull(brandCatalog.getSnapshot().getBrandPageName("columbia"));
+    }
+
+    @Test
+    public void shouldSwapSnapshotAfterTagChange() throws Exception {
+        brandCatalog.activate(ImmutableMap.<String, Object>of("rebuild.delay", 0));
+        BrandSnapshot loaded = brandCatalog.getSnapshot();
+
+        brandTagsNode.addNode("BAUER", "cq:Tag").setProperty(Property.JCR_TITLE, "Bauer");
+        session.save();
+
+        long deadline = System.currentTimeMillis() + TIMEOUT;
+        while (brandCatalog.getSnapshot() == loaded && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(3, brandCatalog.getSnapshot().size());
+        assertTrue(brandCatalog.getSnapshot().getSortedTitles().contains("Bauer"));
+        assertEquals(2, loaded.size());
+    }
+}
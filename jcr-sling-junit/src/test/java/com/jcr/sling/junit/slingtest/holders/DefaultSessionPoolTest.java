@@ -0,0 +1,96 @@
+package com.jcr.sling.junit.slingtest.holders;
+
+import com.google.common.collect.ImmutableMap;
+import org.apache.sling.jcr.api.SlingRepository;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.willThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@RunWith(MockitoJUnitRunner.class)
+public class DefaultSessionPoolTest {
+
+    @Mock
+    private SlingRepository repository;
+
+    @Mock
+    private Session session;
+
+    @Mock
+    private Session otherSession;
+
+    @InjectMocks
+    private final DefaultSessionPool pool = new DefaultSessionPool();
+
+    @Before
+    public void setUp() throws RepositoryException {
+        given(repository.loginAdministrative(null)).willReturn(session);
+        given(session.isLive()).willReturn(true);
+        pool.activate(ImmutableMap.<String, Object>of("pool.size", 1, "pool.wait.timeout", 10));
+    }
+
+    @Test
+    public void shouldReuseReturnedSession() throws RepositoryException {
+        try (SessionPool.Lease lease = pool.lease()) {
+            assertSame(session, lease.getSession());
+        }
+        try (SessionPool.Lease lease = pool.lease()) {
+            assertSame(session, lease.getSession());
+        }
+
+        verify(repository, times(1)).loginAdministrative(null);
+        verify(session, never()).logout();
+        assertEquals(1, pool.getPoolSize());
+        assertEquals(0, pool.getLeasedCount());
+    }
+
+    @Test
+    public void shouldReportExhaustion() throws RepositoryException {
+        try (SessionPool.Lease lease = pool.lease()) {
+            pool.lease();
+            fail("Pool of one session should be exhausted");
+        } catch (RepositoryException e) {
+            assertEquals(1, pool.getExhaustedCount());
+        }
+    }
+
+    @Test
+    public void shouldReplaceIdleSessionFailingToRefresh() throws RepositoryException {
+        given(repository.loginAdministrative(null)).willReturn(session, otherSession);
+        given(otherSession.isLive()).willReturn(true);
+        pool.lease().close();
+        willThrow(new RepositoryException("stale")).given(session).refresh(false);
+
+        try (SessionPool.Lease lease = pool.lease()) {
+            assertSame(otherSession, lease.getSession());
+        }
+
+        verify(session).logout();
+        assertEquals(1, pool.getPoolSize());
+    }
+
+    @Test
+    public void shouldLogOutSessionReturnedAfterDeactivation() throws RepositoryException {
+        SessionPool.Lease lease = pool.lease();
+        pool.deactivate();
+
+        lease.close();
+
+        verify(session).logout();
+        assertEquals(0, pool.getPoolSize());
+    }
+}
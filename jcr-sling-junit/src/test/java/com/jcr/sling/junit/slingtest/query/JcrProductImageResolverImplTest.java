@@ -0,0 +1,171 @@
+package com.jcr.sling.junit.slingtest.query;
+
+import com.google.common.collect.ImmutableList;
+import com.jcr.sling.junit.slingtest.constants.FglPathConstants;
+import org.apache.jackrabbit.commons.JcrUtils;
+import org.apache.sling.commons.testing.jcr.RepositoryProvider;
+import org.apache.sling.commons.testing.jcr.RepositoryUtil;
+import org.apache.sling.jcr.api.SlingRepository;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.mockito.stubbing.Answer;
+
+import javax.jcr.Node;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+import javax.jcr.observation.Event;
+import javax.jcr.observation.EventIterator;
+import java.io.IOException;
+
+import static com.day.cq.commons.jcr.JcrConstants.NT_UNSTRUCTURED;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+
+@RunWith(MockitoJUnitRunner.class)
+public class JcrProductImageResolverImplTest {
+
+    private static final String FOLDER_PATH = FglPathConstants.PRODUCT_IMAGES_PATH + "/331/234/567";
+    private static final String DAM_ASSET_NODE_TYPE = "dam:Asset";
+    private static final String PRODUCT_CODE = "331234567";
+    private static final long TIMEOUT = 5000;
+
+    @Mock
+    private SlingRepository repository;
+
+    @InjectMocks
+    private final JcrProductImageResolverImpl imageResolver = new JcrProductImageResolverImpl();
+
+    private Session session;
+    private Node imagesNode;
+
+    @BeforeClass
+    public static void configureRepository() throws RepositoryException, IOException {
+        Session session = RepositoryProvider.instance().getRepository().loginAdministrative(null);
+        try {
+            RepositoryUtil.registerNodeType(session,
+                    JcrProductImageResolverImplTest.class.getClassLoader().getResourceAsStream("cq.cnd"));
+            session.save();
+        } finally {
+            session.logout();
+        }
+    }
+
+    @Before
+    public void setUp() throws RepositoryException {
+        session = RepositoryProvider.instance().getRepository().loginAdministrative(null);
+        imagesNode = JcrUtils.getOrCreateByPath(FglPathConstants.PRODUCT_IMAGES_PATH, NT_UNSTRUCTURED, session);
+        given(repository.loginAdministrative(null)).willAnswer(new Answer<Session>() {
+            @Override
+            public Session answer(final InvocationOnMock invocation) throws RepositoryException {
+                return RepositoryProvider.instance().getRepository().loginAdministrative(null);
+            }
+        });
+    }
+
+    @After
+    public void tearDown() throws RepositoryException {
+        imageResolver.deactivate();
+        try {
+            if (imagesNode.hasNode("331")) {
+                imagesNode.getNode("331").remove();
+                session.save();
+            }
+        } finally {
+            session.logout();
+        }
+    }
+
+    @Test
+    public void shouldResolveImagesAndSwatchesOfProductFolder() throws Exception {
+        Node image = createAsset("331234567_10_a.png");
+        Node swatch = createAsset("331234567_10_S.png");
+        createAsset("331234999_10_a.png");
+        session.save();
+
+        imageResolver.activate();
+        waitForReady();
+
+        assertEquals(ImmutableList.of(image.getPath()), imageResolver.getImagePaths(PRODUCT_CODE));
+        assertEquals(ImmutableList.of(swatch.getPath()), imageResolver.getSwatchImagePaths(PRODUCT_CODE));
+        assertTrue(imageResolver.getImagePaths("331234999").isEmpty());
+    }
+
+    @Test
+    public void shouldApplyAddedAndRemovedAssets() throws Exception {
+        Node image = createAsset("331234567_10_a.png");
+        session.save();
+        imageResolver.activate();
+        waitForReady();
+
+        Node addedImage = createAsset("331234567_20_a.png");
+        String removedPath = image.getPath();
+        image.remove();
+        session.save();
+        imageResolver.onEvent(events(event(addedImage.getPath()), event(removedPath)));
+
+        long deadline = System.currentTimeMillis() + TIMEOUT;
+        while (!imageResolver.getImagePaths(PRODUCT_CODE).equals(ImmutableList.of(addedImage.getPath()))
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(ImmutableList.of(addedImage.getPath()), imageResolver.getImagePaths(PRODUCT_CODE));
+    }
+
+    @Test
+    public void shouldRemoveImagesOfRemovedFolderOnly() throws Exception {
+        createAsset("331234567_10_a.png");
+        Node otherImage = createAsset(FOLDER_PATH + "8", "3312345678_10_a.png");
+        session.save();
+        imageResolver.activate();
+        waitForReady();
+
+        session.getNode(FOLDER_PATH).remove();
+        session.save();
+        imageResolver.onEvent(events(event(FOLDER_PATH), event(FOLDER_PATH)));
+
+        long deadline = System.currentTimeMillis() + TIMEOUT;
+        while (!imageResolver.getImagePaths(PRODUCT_CODE).isEmpty() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(imageResolver.getImagePaths(PRODUCT_CODE).isEmpty());
+        assertEquals(ImmutableList.of(otherImage.getPath()), imageResolver.getImagePaths("3312345678"));
+    }
+
+    private Node createAsset(final String name) throws RepositoryException {
+        return createAsset(FOLDER_PATH, name);
+    }
+
+    private Node createAsset(final String folderPath, final String name) throws RepositoryException {
+        return JcrUtils.getOrCreateByPath(folderPath + "/" + name, NT_UNSTRUCTURED, DAM_ASSET_NODE_TYPE,
+                session, false);
+    }
+
+    private void waitForReady() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT;
+        while (!imageResolver.isReady() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+
+    private static Event event(final String path) throws RepositoryException {
+        Event event = mock(Event.class);
+        given(event.getPath()).willReturn(path);
+        return event;
+    }
+
+    private static EventIterator events(final Event first, final Event second) {
+        EventIterator events = mock(EventIterator.class);
+        given(events.hasNext()).willReturn(true, true, false);
+        given(events.nextEvent()).willReturn(first, second);
+        return events;
+    }
+}
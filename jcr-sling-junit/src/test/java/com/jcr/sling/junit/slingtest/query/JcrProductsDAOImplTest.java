@@ -3,8 +3,13 @@ package com.jcr.sling.junit.slingtest.query;
 import com.day.cq.commons.jcr.JcrConstants;
 import com.day.cq.commons.jcr.JcrUtil;
 import com.day.cq.wcm.api.NameConstants;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.ImmutableSetMultimap;
+import com.google.common.collect.ListMultimap;
 import com.google.common.collect.SetMultimap;
+import com.jcr.sling.junit.slingtest.holders.SessionPool;
 import com.jcr.sling.junit.slingtest.query.add.FglJcrProductProperties;
 import com.jcr.sling.junit.slingtest.query.add.Product;
 import com.jcr.sling.junit.slingtest.query.add.ProductSearchResult;
@@ -20,6 +25,7 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.internal.util.reflection.Whitebox;
 import org.mockito.runners.MockitoJUnitRunner;
 
 import javax.jcr.Node;
@@ -28,19 +34,29 @@ import javax.jcr.Session;
 import java.io.IOException;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ThreadPoolExecutor;
 
 import static com.day.cq.commons.jcr.JcrConstants.NT_UNSTRUCTURED;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.BDDMockito.given;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyCollectionOf;
 import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 
 @RunWith(MockitoJUnitRunner.class)
 public class JcrProductsDAOImplTest {
@@ -55,6 +71,8 @@ public class JcrProductsDAOImplTest {
     private static final String NOT_ALL_PROPERTIES_POPULATED = "Not all product properties populated";
     private static final String SCLS_22_SHORTS_CATEGORY_TAG = "sportchek:categories/DIV-03-SOFTGOODS/DPT-72-CASUAL-CLOTHING/SDPT-03-BOYS/CLS-14-ACTION-SPORTS-APPAREL/SCLS-22-SHORTS";
     private static final String SDPT_03_BOYS = "sportchek:categories/DIV-03-SOFTGOODS/DPT-72-CASUAL-CLOTHING/SDPT-03-BOYS";
+    private static final String PRODUCT_IMAGES_PATH = "/content/dam/sportchek/product-images";
+    private static final String DAM_ASSET_NODE_TYPE = "dam:Asset";
     public static final String DAM_IMAGE_NODE_PATH = "/content/dam/sportchek/product-images/prd/000/prd000001_10_a.png";
 
     @Mock
@@ -96,6 +114,8 @@ public class JcrProductsDAOImplTest {
         doNothing().when(spiedSession).logout();
         given(mockSlingRepository.loginAdministrative(null)).willReturn(spiedSession);
         given(usersDao.getUserDisplayName(any(String.class))).willReturn("Administrator");
+        given(usersDao.getUserDisplayNames(anyCollectionOf(String.class)))
+                .willReturn(ImmutableMap.of("admin", "Administrator"));
     }
 
     @After
@@ -183,6 +203,23 @@ public class JcrProductsDAOImplTest {
         assertProductFound("Product was not found by PMM ID", searchResult.getProducts(), TEST_EXT_ID);
     }
 
+    @Test
+    public void shouldReadOnlyRequestedFields() throws RepositoryException {
+        createProductNode(rootNode, TEST_EXT_ID, ANY_BRAND);
+        session.save();
+
+        SetMultimap<String, String> criteria = ImmutableSetMultimap.of("pmmId", TEST_EXT_ID);
+        ProductSearchResult searchResult = jcrProductsDAO.findProducts(criteria,
+                ImmutableSet.of(FglJcrProductProperties.EXT_ID, FglJcrProductProperties.ECOMM_BRAND));
+
+        Product product = searchResult.getProducts().get(0);
+        assertEquals(TEST_EXT_ID, product.getExtId());
+        assertEquals(ANY_BRAND, product.getEcommBrand());
+        assertEquals(ROOT_NODE_PATH + "/PRODUCT " + ANY_BRAND, product.getPath());
+        assertNull(product.getProductTitle());
+        verify(usersDao, never()).getUserDisplayNames(anyCollectionOf(String.class));
+    }
+
     @Test
     public void shouldFindByPmmTitle() throws Exception {
         final Node productNode = createProductNode(rootNode, TEST_EXT_ID, ANY_BRAND);
@@ -270,6 +307,15 @@ public class JcrProductsDAOImplTest {
         assertProductFound("Product was not found by publish status", searchResult.getProducts(), TEST_EXT_ID);
     }
 
+    @Test
+    public void shouldFindNoProductsByNonNumericStatus() {
+        SetMultimap<String, String> criteria = ImmutableSetMultimap.of("publishStatus", "published");
+
+        ProductSearchResult searchResult = jcrProductsDAO.findProducts(criteria);
+
+        assertTrue(searchResult.getProducts().isEmpty());
+    }
+
     @Test
     public void shouldFindProductsByBrand() throws RepositoryException {
         createProductNode(rootNode, "818181", ANY_BRAND);
@@ -369,6 +415,109 @@ public class JcrProductsDAOImplTest {
         assertEquals("Products were not found by statuses", 2, searchResult.getProducts().size());
     }
 
+    @Test
+    public void shouldStreamProductsByStatuses() {
+        int count = 0;
+        try (ProductIterator products = jcrProductsDAO.streamProductsByStatuses(Product.Status.NEW)) {
+            while (products.hasNext()) {
+                assertNotNull(products.next().getExtId());
+                count++;
+            }
+        }
+
+        assertEquals(GHOST_PRODUCTS_NUMBER, count);
+    }
+
+    @Test
+    public void shouldFindNoProductsWhenSessionPoolIsExhausted() throws RepositoryException {
+        SessionPool exhaustedPool = mock(SessionPool.class);
+        given(exhaustedPool.lease()).willThrow(new RepositoryException("No session became available in time"));
+        Whitebox.setInternalState(jcrProductsDAO, "sessionPool", exhaustedPool);
+
+        ProductSearchResult searchResult = jcrProductsDAO.findProducts(
+                ImmutableSetMultimap.of("p.limit", "5"));
+
+        assertTrue(searchResult.getProducts().isEmpty());
+        assertEquals(0, searchResult.getTotalProductsNumber());
+        try (ProductIterator products = jcrProductsDAO.streamProductsByStatuses(Product.Status.NEW)) {
+            assertFalse(products.hasNext());
+        }
+    }
+
+    @Test
+    public void shouldMergeStatusPartitionsByExtId() throws RepositoryException {
+        Node folder = rootNode.addNode("folder", SLING_FOLDER_NODE_TYPE);
+        Node pendingProductNode = createProductNode(folder, "8376920", "Other Brand");
+        pendingProductNode.setProperty(FglJcrProductProperties.STATUS, Product.Status.PENDING.getStatusId());
+        Node modifiedProductNode = createProductNode(rootNode, TEST_EXT_ID, ANY_BRAND);
+        modifiedProductNode.setProperty(FglJcrProductProperties.STATUS, Product.Status.MODIFIED.getStatusId());
+        session.save();
+        jcrProductsDAO.activate(ImmutableMap.<String, Object>of("partition.threads", 1));
+
+        ProductSearchResult searchResult;
+        try {
+            searchResult = jcrProductsDAO.findProductsByStatuses(Product.Status.PENDING, Product.Status.MODIFIED);
+        } finally {
+            jcrProductsDAO.deactivate();
+        }
+
+        assertEquals(2, searchResult.getProducts().size());
+        assertEquals(TEST_EXT_ID, searchResult.getProducts().get(0).getExtId());
+        assertEquals("8376920", searchResult.getProducts().get(1).getExtId());
+    }
+
+    @Test
+    public void shouldFindSameProductsByStatusesInPartitions() throws RepositoryException {
+        Node pageNode = rootNode.getNode("PRODUCT 3");
+        Node nestedProductNode = createProductNode(pageNode, "8376921", "Nested Brand");
+        nestedProductNode.setProperty(FglJcrProductProperties.STATUS, Product.Status.PENDING.getStatusId());
+        Node folder = rootNode.addNode("folder", SLING_FOLDER_NODE_TYPE);
+        Node folderPageNode = createProductNode(folder, "8376920", "Other Brand").getParent().getParent();
+        createProductNode(folderPageNode, "8376922", "Deep Brand")
+                .setProperty(FglJcrProductProperties.STATUS, Product.Status.PENDING.getStatusId());
+        session.save();
+
+        List<String> expected = getExtIds(jcrProductsDAO.findProductsByStatuses(Product.Status.PENDING,
+                Product.Status.NEW));
+        jcrProductsDAO.activate(ImmutableMap.<String, Object>of("partition.threads", 2));
+        List<String> partitioned;
+        try {
+            partitioned = getExtIds(jcrProductsDAO.findProductsByStatuses(Product.Status.PENDING,
+                    Product.Status.NEW));
+        } finally {
+            jcrProductsDAO.deactivate();
+        }
+
+        assertEquals(GHOST_PRODUCTS_NUMBER + 3, expected.size());
+        assertTrue(expected.contains("8376921"));
+        assertEquals(expected.size(), partitioned.size());
+        assertEquals(new HashSet<>(expected), new HashSet<>(partitioned));
+    }
+
+    @Test
+    public void shouldLimitPartitionThreadsToSessionPoolSize() {
+        SessionPool pool = mock(SessionPool.class);
+        given(pool.getMaxPoolSize()).willReturn(2);
+        Whitebox.setInternalState(jcrProductsDAO, "sessionPool", pool);
+
+        jcrProductsDAO.activate(ImmutableMap.<String, Object>of("partition.threads", 8));
+        try {
+            ThreadPoolExecutor executor = (ThreadPoolExecutor) Whitebox.getInternalState(jcrProductsDAO,
+                    "partitionExecutor");
+            assertEquals(2, executor.getMaximumPoolSize());
+        } finally {
+            jcrProductsDAO.deactivate();
+        }
+    }
+
+    private static List<String> getExtIds(final ProductSearchResult searchResult) {
+        List<String> extIds = new ArrayList<>();
+        for (Product product : searchResult.getProducts()) {
+            extIds.add(product.getExtId());
+        }
+        return extIds;
+    }
+
     @Test
     public void shouldPaginateSearchResults() {
         SetMultimap<String, String> criteria = ImmutableSetMultimap.<String, String>builder().put("p.offset", "5")
@@ -379,6 +528,101 @@ public class JcrProductsDAOImplTest {
         assertPaginationValid(searchResult, 1, GHOST_PRODUCTS_NUMBER);
     }
 
+    @Test
+    public void shouldResolveUserDisplayNamesOncePerPage() {
+        ProductSearchResult searchResult = jcrProductsDAO.findProducts(ImmutableSetMultimap.<String, String>of());
+
+        assertEquals(GHOST_PRODUCTS_NUMBER, searchResult.getProducts().size());
+        verify(usersDao, times(1)).getUserDisplayNames(anyCollectionOf(String.class));
+        verify(usersDao, never()).getUserDisplayName(any(String.class));
+    }
+
+    @Test
+    public void shouldPaginateSearchResultsWithKeysetToken() {
+        SetMultimap<String, String> firstPageCriteria = ImmutableSetMultimap.<String, String>builder()
+                .put("p.sort", FglJcrProductProperties.EXT_ID).put("p.limit", "3").build();
+        ProductSearchResult firstPage = jcrProductsDAO.findProducts(firstPageCriteria);
+
+        SetMultimap<String, String> secondPageCriteria = ImmutableSetMultimap.<String, String>builder()
+                .putAll(firstPageCriteria).put("p.after", firstPage.getNextAfter()).build();
+        ProductSearchResult secondPage = jcrProductsDAO.findProducts(secondPageCriteria);
+
+        assertEquals("2", firstPage.getProducts().get(2).getExtId());
+        assertEquals("Should continue right after the first page", "3", secondPage.getProducts().get(0).getExtId());
+        assertEquals(3, secondPage.getProducts().size());
+    }
+
+    @Test
+    public void shouldSeekPastProductsWithoutSortValue() throws RepositoryException {
+        for (int i = 0; i < 4; i++) {
+            rootNode.getNode("PRODUCT " + i + "/jcr:content/product")
+                    .setProperty(FglJcrProductProperties.ECOMM_VENDOR, "Vendor " + (i % 2));
+        }
+        session.save();
+
+        for (String direction : ImmutableList.of("asc", "desc")) {
+            SetMultimap<String, String> criteria = ImmutableSetMultimap.<String, String>builder()
+                    .put("p.sort", FglJcrProductProperties.ECOMM_VENDOR).put("p.dir", direction).build();
+            List<String> expected = getExtIds(jcrProductsDAO.findProducts(criteria));
+
+            List<String> paged = new ArrayList<>();
+            String after = null;
+            do {
+                ImmutableSetMultimap.Builder<String, String> pageCriteria = ImmutableSetMultimap
+                        .<String, String>builder().putAll(criteria).put("p.limit", "3");
+                if (after != null) {
+                    pageCriteria.put("p.after", after);
+                }
+                ProductSearchResult page = jcrProductsDAO.findProducts(pageCriteria.build());
+                paged.addAll(getExtIds(page));
+                after = page.getNextAfter();
+            } while (after != null && paged.size() < 2 * GHOST_PRODUCTS_NUMBER);
+
+            assertEquals(GHOST_PRODUCTS_NUMBER, expected.size());
+            assertEquals("Pages sorted " + direction + " should follow the unpaged order", expected, paged);
+        }
+    }
+
+    @Test
+    public void shouldReportEstimatedTotalAboveMaxCount() {
+        jcrProductsDAO.activate(ImmutableMap.<String, Object>of("count.max", 4));
+        SetMultimap<String, String> criteria = ImmutableSetMultimap.<String, String>builder().put("p.limit", "2")
+                .build();
+
+        ProductSearchResult searchResult = jcrProductsDAO.findProducts(criteria);
+
+        assertEquals(2, searchResult.getProducts().size());
+        assertEquals(4, searchResult.getTotalProductsNumber());
+        assertFalse("Total should be estimated", searchResult.isTotalExact());
+    }
+
+    @Test
+    public void shouldCountFacetsOfAllMatchingProducts() {
+        SetMultimap<String, String> criteria = ImmutableSetMultimap.<String, String>builder().put("p.limit", "2")
+                .put("p.facets", "true").build();
+
+        ProductSearchResult searchResult = jcrProductsDAO.findProducts(criteria);
+
+        assertEquals(2, searchResult.getProducts().size());
+        assertEquals(GHOST_PRODUCTS_NUMBER, searchResult.getFacets().get(FglJcrProductProperties.ECOMM_BRAND).size());
+        assertEquals(Long.valueOf(GHOST_PRODUCTS_NUMBER), searchResult.getFacets().get(FglJcrProductProperties.STATUS)
+                .get(String.valueOf(Product.Status.NEW.getStatusId())));
+    }
+
+    @Test
+    public void shouldCountFacetsUpToMaxCount() {
+        jcrProductsDAO.activate(ImmutableMap.<String, Object>of("count.max", 4));
+        SetMultimap<String, String> criteria = ImmutableSetMultimap.<String, String>builder().put("p.limit", "2")
+                .put("p.facets", "true").build();
+
+        ProductSearchResult searchResult = jcrProductsDAO.findProducts(criteria);
+
+        assertFalse("Facets should be lower bounds like the total", searchResult.isTotalExact());
+        assertEquals(4, searchResult.getFacets().get(FglJcrProductProperties.ECOMM_BRAND).size());
+        assertEquals(Long.valueOf(4), searchResult.getFacets().get(FglJcrProductProperties.STATUS)
+                .get(String.valueOf(Product.Status.NEW.getStatusId())));
+    }
+
     @Test
     public void shouldLoadProductsWithinCategory() throws RepositoryException {
         String extId = "42";
@@ -434,6 +678,62 @@ public class JcrProductsDAOImplTest {
         assertFalse(nodeIterator.hasNext());
     }
 
+    @Test
+    public void shouldGroupImagesOfManyProductCodes() throws RepositoryException {
+        Node imagesNode = JcrUtils.getOrCreateByPath(PRODUCT_IMAGES_PATH, NT_UNSTRUCTURED, session);
+        try {
+            Node image = JcrUtils.getOrCreateByPath(PRODUCT_IMAGES_PATH + "/331/234/567/331234567_10_a.png",
+                    NT_UNSTRUCTURED, DAM_ASSET_NODE_TYPE, session, false);
+            Node swatch = JcrUtils.getOrCreateByPath(PRODUCT_IMAGES_PATH + "/331/234/567/331234567_10_s.png",
+                    NT_UNSTRUCTURED, DAM_ASSET_NODE_TYPE, session, false);
+            Node otherImage = JcrUtils.getOrCreateByPath(PRODUCT_IMAGES_PATH + "/331/234/568/331234568_10_a.png",
+                    NT_UNSTRUCTURED, DAM_ASSET_NODE_TYPE, session, false);
+            session.save();
+
+            List<String> codes = ImmutableList.of("331234567", "331234568", "331234569");
+            ListMultimap<String, Node> images = jcrProductsDAO.getAllProductImageData(codes, session);
+
+            assertEquals(ImmutableSet.of(image.getPath(), swatch.getPath()), paths(images.get("331234567")));
+            assertEquals(ImmutableSet.of(otherImage.getPath()), paths(images.get("331234568")));
+            assertFalse(images.containsKey("331234569"));
+            assertEquals(ImmutableSet.of(swatch.getPath()),
+                    paths(jcrProductsDAO.getSwatchImageData(codes, session).get("331234567")));
+            assertEquals(ImmutableSet.of(image.getPath()),
+                    paths(jcrProductsDAO.getImageData(codes, session).get("331234567")));
+        } finally {
+            imagesNode.getNode("331").remove();
+            session.save();
+        }
+    }
+
+    @Test
+    public void shouldListImagesOfExistingProductImageFolder() throws RepositoryException {
+        Node imagesNode = JcrUtils.getOrCreateByPath(PRODUCT_IMAGES_PATH, NT_UNSTRUCTURED, session);
+        try {
+            Node image = JcrUtils.getOrCreateByPath(PRODUCT_IMAGES_PATH + "/331/234/567/331234567_10_a.png",
+                    NT_UNSTRUCTURED, DAM_ASSET_NODE_TYPE, session, false);
+            JcrUtils.getOrCreateByPath(PRODUCT_IMAGES_PATH + "/331/234/567/331234999_10_a.png",
+                    NT_UNSTRUCTURED, DAM_ASSET_NODE_TYPE, session, false);
+            session.save();
+
+            Iterator<Node> images = jcrProductsDAO.getAllProductImageData("331234567", session);
+
+            assertEquals(image.getPath(), images.next().getPath());
+            assertFalse(images.hasNext());
+        } finally {
+            imagesNode.getNode("331").remove();
+            session.save();
+        }
+    }
+
+    private static Set<String> paths(final List<Node> nodes) throws RepositoryException {
+        Set<String> paths = new HashSet<>();
+        for (Node node : nodes) {
+            paths.add(node.getPath());
+        }
+        return paths;
+    }
+
     private static void assertPaginationValid(final ProductSearchResult searchResult, final long pageSize,
                                               final int totalResults) {
 
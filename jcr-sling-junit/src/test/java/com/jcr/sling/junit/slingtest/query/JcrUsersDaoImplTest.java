@@ -0,0 +1,95 @@
+package com.jcr.sling.junit.slingtest.query;
+
+import com.adobe.granite.security.user.UserProperties;
+import com.adobe.granite.security.user.UserPropertiesManager;
+import com.google.common.collect.ImmutableMap;
+import org.apache.jackrabbit.api.JackrabbitSession;
+import org.apache.jackrabbit.api.security.user.Authorizable;
+import org.apache.jackrabbit.api.security.user.UserManager;
+import org.apache.sling.api.resource.LoginException;
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.api.resource.ResourceResolverFactory;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@RunWith(MockitoJUnitRunner.class)
+public class JcrUsersDaoImplTest {
+
+    @Mock
+    private ResourceResolverFactory resourceResolverFactory;
+
+    @Mock
+    private ResourceResolver resolver;
+
+    @Mock
+    private JackrabbitSession session;
+
+    @Mock
+    private UserManager userManager;
+
+    @InjectMocks
+    private final JcrUsersDaoImpl usersDao = new JcrUsersDaoImpl();
+
+    @Before
+    public void setUp() throws LoginException, RepositoryException {
+        given(resourceResolverFactory.getAdministrativeResourceResolver(null)).willReturn(resolver);
+        given(resolver.adaptTo(Session.class)).willReturn(session);
+        given(resolver.isLive()).willReturn(true);
+        given(session.getUserManager()).willReturn(userManager);
+        givenUser("jdoe", "John Doe");
+        givenUser("asmith", "Anna Smith");
+    }
+
+    @Test
+    public void shouldReadDisplayNameOnce() throws RepositoryException {
+        usersDao.activate(ImmutableMap.<String, Object>of());
+
+        assertEquals("John Doe", usersDao.getUserDisplayName("jdoe"));
+        assertEquals("John Doe", usersDao.getUserDisplayName("jdoe"));
+
+        verify(userManager, times(1)).getAuthorizable("jdoe");
+        assertEquals(1, usersDao.getCacheHitCount());
+        assertEquals(1, usersDao.getCacheMissCount());
+    }
+
+    @Test
+    public void shouldReadEvictedDisplayNameAgain() throws RepositoryException {
+        usersDao.activate(ImmutableMap.<String, Object>of("cache.size", 1));
+
+        assertEquals("John Doe", usersDao.getUserDisplayName("jdoe"));
+        assertEquals("Anna Smith", usersDao.getUserDisplayName("asmith"));
+        assertEquals("John Doe", usersDao.getUserDisplayName("jdoe"));
+
+        verify(userManager, times(2)).getAuthorizable("jdoe");
+        assertEquals(0, usersDao.getCacheHitCount());
+        assertEquals(3, usersDao.getCacheMissCount());
+    }
+
+    private void givenUser(final String userId, final String displayName) throws RepositoryException {
+        String path = "/home/users/" + userId;
+        Authorizable user = mock(Authorizable.class);
+        Resource userResource = mock(Resource.class);
+        UserPropertiesManager userPropertiesManager = mock(UserPropertiesManager.class);
+        UserProperties userProperties = mock(UserProperties.class);
+        given(userManager.getAuthorizable(userId)).willReturn(user);
+        given(user.getPath()).willReturn(path);
+        given(resolver.resolve(path)).willReturn(userResource);
+        given(userResource.adaptTo(UserPropertiesManager.class)).willReturn(userPropertiesManager);
+        given(userPropertiesManager.getUserProperties(userId, "profile")).willReturn(userProperties);
+        given(userProperties.getDisplayName()).willReturn(displayName);
+    }
+}
@@ -0,0 +1,69 @@
+package com.jcr.sling.junit.slingtest.query;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+import javax.jcr.Workspace;
+import javax.jcr.query.Query;
+import javax.jcr.query.QueryManager;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@RunWith(MockitoJUnitRunner.class)
+public class PreparedQueryCacheTest {
+
+    private static final String STATEMENT = "SELECT * FROM [nt:unstructured]";
+
+    @Mock
+    private Session session;
+    @Mock
+    private Workspace workspace;
+    @Mock
+    private QueryManager queryManager;
+
+    private final PreparedQueryCache preparedQueries = new PreparedQueryCache(10);
+
+    @Before
+    public void setUp() throws RepositoryException {
+        given(session.isLive()).willReturn(true);
+        given(session.getWorkspace()).willReturn(workspace);
+        given(workspace.getQueryManager()).willReturn(queryManager);
+        given(queryManager.createQuery(STATEMENT, Query.JCR_SQL2)).willReturn(mock(Query.class));
+    }
+
+    @Test
+    public void shouldParseStatementOncePerSession() throws RepositoryException {
+        Query first = preparedQueries.getQuery(session, STATEMENT);
+        Query second = preparedQueries.getQuery(session, STATEMENT);
+
+        assertSame(first, second);
+        verify(queryManager, times(1)).createQuery(STATEMENT, Query.JCR_SQL2);
+    }
+
+    @Test
+    public void shouldReleaseQueriesOfLoggedOutSession() throws RepositoryException {
+        Session otherSession = mock(Session.class);
+        given(otherSession.isLive()).willReturn(true);
+        given(otherSession.getWorkspace()).willReturn(workspace);
+        preparedQueries.getQuery(session, STATEMENT);
+        assertEquals(1, preparedQueries.getSessionCount());
+
+        given(session.isLive()).willReturn(false);
+        preparedQueries.getQuery(otherSession, STATEMENT);
+
+        assertEquals(1, preparedQueries.getSessionCount());
+        preparedQueries.getQuery(session, STATEMENT);
+        assertEquals(1, preparedQueries.getSessionCount());
+        verify(queryManager, times(3)).createQuery(STATEMENT, Query.JCR_SQL2);
+    }
+}
@@ -0,0 +1,30 @@
+package com.jcr.sling.junit.slingtest.query.add;
+
+import org.joda.time.DateTime;
+import org.junit.Test;
+
+import java.util.Calendar;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class DateFormatsTest {
+
+    @Test
+    public void shouldConvertQueryDateToIso() {
+        String iso = DateFormats.toIsoDateTime("2014-05-05T10:30:00");
+
+        assertEquals(new DateTime(2014, 5, 5, 10, 30).getMillis(), DateFormats.ISO_DATE_TIME.parseMillis(iso));
+    }
+
+    @Test
+    public void shouldFormatDisplayDate() {
+        Calendar calendar = Calendar.getInstance();
+        calendar.clear();
+        calendar.set(2014, Calendar.MAY, 5, 22, 30, 15);
+
+        // the am/pm marker depends on the default locale
+        assertTrue(DateFormats.toDisplayDateTime(calendar).startsWith("05/05/2014 10:30 "));
+        assertEquals("", DateFormats.toDisplayDateTime(null));
+    }
+}
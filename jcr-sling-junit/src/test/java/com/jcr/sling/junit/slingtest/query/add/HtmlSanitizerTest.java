@@ -0,0 +1,53 @@
+package com.jcr.sling.junit.slingtest.query.add;
+
+import com.google.common.collect.ImmutableList;
+import org.jsoup.Jsoup;
+import org.jsoup.safety.Whitelist;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class HtmlSanitizerTest {
+
+    private static final List<String> TEXTS = ImmutableList.of(
+            "Waterproof, breathable shell",
+            "Weight: 350 g (size 9)",
+            "100% polyester",
+            "",
+            " Leading space",
+            "Trailing space ",
+            "Double  space",
+            "Line\nbreak",
+            "Fit: \"Athletic\"",
+            "Imperméable",
+            "Nylon & spandex",
+            "&nbsp;Lined",
+            "<b>Bold</b> claim",
+            "<script>alert(1)</script>Removed",
+            "Size > 10",
+            "Shoulder 45'");
+
+    @Test
+    public void shouldCleanLikeJsoup() {
+        for (String text : TEXTS) {
+            assertEquals(text, Jsoup.clean(text, Whitelist.none()), HtmlSanitizer.clean(text, Whitelist.none()));
+            assertEquals(text, Jsoup.clean(text, Whitelist.basic()), HtmlSanitizer.clean(text, Whitelist.basic()));
+        }
+    }
+
+    @Test
+    public void shouldReturnPlainTextWithoutParsing() {
+        String text = "Waterproof, breathable shell";
+
+        assertTrue(HtmlSanitizer.isPlainText(text));
+        assertSame(text, HtmlSanitizer.clean(text, Whitelist.none()));
+        assertFalse(HtmlSanitizer.isPlainText("<b>Bold</b>"));
+        assertFalse(HtmlSanitizer.isPlainText("Nylon & spandex"));
+        assertFalse(HtmlSanitizer.isPlainText(null));
+    }
+}
@@ -0,0 +1,68 @@
+package com.jcr.sling.junit.slingtest.query.add;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import org.apache.sling.commons.json.JSONArray;
+import org.apache.sling.commons.json.JSONException;
+import org.apache.sling.commons.json.JSONObject;
+import org.junit.Test;
+
+import java.io.StringWriter;
+import java.util.Calendar;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ProductSearchResultWriterTest {
+
+    @Test
+    public void shouldStreamProductsTotalsAndFacets() throws JSONException {
+        Product product = product("/etc/commerce/products/sportchek/master/33/331234567");
+        ProductSearchResult result = new ProductSearchResult(ImmutableList.of(product), 42, false, "token",
+                ImmutableMap.<String, Map<String, Long>>of(FglJcrProductProperties.ECOMM_BRAND,
+                        ImmutableMap.of("Nike", 42L)));
+
+        StringWriter out = new StringWriter();
+        ProductSearchResultWriter.write(result, out);
+        JSONObject json = new JSONObject(out.toString());
+
+        assertEquals(42, json.getLong(ProductSearchResultWriter.TOTAL));
+        assertFalse(json.getBoolean(ProductSearchResultWriter.TOTAL_EXACT));
+        assertEquals("token", json.getString(ProductSearchResultWriter.NEXT_AFTER));
+        assertEquals(42, json.getJSONObject(ProductSearchResultWriter.FACETS)
+                .getJSONObject(FglJcrProductProperties.ECOMM_BRAND).getLong("Nike"));
+        JSONArray products = json.getJSONArray(ProductSearchResultWriter.PRODUCTS);
+        assertEquals(1, products.length());
+        assertEquals(product.toJson().toString(), products.getJSONObject(0).toString());
+    }
+
+    @Test
+    public void shouldLeaveOutPropertiesWithoutValue() throws JSONException {
+        Product product = product("/etc/commerce/products/sportchek/master/33/331234999");
+        product.setBrand(null);
+
+        JSONObject json = product.toJson();
+
+        assertFalse(json.has(FglJcrProductProperties.ECOMM_BRAND));
+        assertTrue(json.has(FglJcrProductProperties.EXT_ID));
+        assertEquals("Waterproof shell", json.getString(FglJcrProductProperties.FEATURES));
+        assertTrue(json.getString(FglJcrProductProperties.ECOMM_LAST_MODIFIED_DATE).startsWith("05/05/2014 10:30"));
+    }
+
+    private static Product product(final String path) {
+        Product product = new Product();
+        product.setPath(path);
+        product.setBrand("Nike");
+        product.setExtId("331234567");
+        product.setFeatures("<b>Waterproof</b> shell");
+        product.setLongDescription("Light jacket");
+        product.setSpecification("Nylon & spandex");
+        Calendar lastModified = Calendar.getInstance();
+        lastModified.clear();
+        lastModified.set(2014, Calendar.MAY, 5, 10, 30);
+        product.setEcommLastModifiedDate(lastModified);
+        return product;
+    }
+}
@@ -0,0 +1,71 @@
+package com.jcr.sling.junit.slingtest.query.add;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.Test;
+
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+public class Sql2QueryBuilderTest {
+
+    private static final String PATH = "/etc/commerce/products/sportchek/source";
+
+    @Test
+    public void shouldInlineEscapedFullTextLiteral() {
+        Sql2QueryBuilder builder = Sql2QueryBuilder.createProductSearchQuery(PATH);
+
+        builder.addFullTextConstraint(Collections.singleton("men's"));
+
+        assertEquals("SELECT product.* FROM [nt:unstructured] AS product WHERE NAME(product) = 'product'"
+                + " AND ISDESCENDANTNODE(product, '" + PATH + "')"
+                + " AND (CONTAINS(product.*, '*men\\''s*') or (CONTAINS(product.*, 'men\\''s')))",
+                builder.getQuery());
+    }
+
+    @Test
+    public void shouldProduceSameQueryForSameCriteriaShape() {
+        Sql2QueryBuilder first = createBindVariablesQuery("424242", "1");
+        Sql2QueryBuilder second = createBindVariablesQuery("434343", "2");
+
+        assertEquals(first.getQuery(), second.getQuery());
+        assertFalse(first.getCountKey().equals(second.getCountKey()));
+        assertEquals(ImmutableList.<Object>of(first.getCountQuery(), "424242", 1L), first.getCountKey());
+    }
+
+    @Test
+    public void shouldBindNonNumericStatusAsString() {
+        Sql2QueryBuilder builder = Sql2QueryBuilder.createProductSearchQuery(PATH).withBindVariables();
+
+        builder.addPublishStatusConstraint(ImmutableList.of("2", "published"));
+
+        assertEquals(ImmutableList.<Object>of(builder.getCountQuery(), 2L, "published"), builder.getCountKey());
+    }
+
+    @Test
+    public void shouldSeekPastProductsWithoutSortValue() {
+        Sql2QueryBuilder builder = Sql2QueryBuilder.createProductSearchQuery(PATH);
+        SeekToken token = SeekToken.parse(SeekToken.of(null, "424242").toString()).get();
+
+        builder.addSeekConstraint(FglJcrProductProperties.ECOMM_VENDOR, "ASC", token);
+
+        assertEquals(null, token.getSortValue());
+        assertEquals("SELECT product.* FROM [nt:unstructured] AS product WHERE NAME(product) = 'product'"
+                + " AND ISDESCENDANTNODE(product, '" + PATH + "')"
+                + " AND ((NOT product.'" + FglJcrProductProperties.ECOMM_VENDOR + "' IS NOT NULL"
+                + " AND product.'" + FglJcrProductProperties.EXT_ID + "' > '424242')"
+                + " OR product.'" + FglJcrProductProperties.ECOMM_VENDOR + "' IS NOT NULL)",
+                builder.getQuery());
+    }
+
+    private static Sql2QueryBuilder createBindVariablesQuery(final String extId, final String status) {
+        Sql2QueryBuilder builder = Sql2QueryBuilder.createProductSearchQuery(PATH).withBindVariables();
+        builder.addPropertyConstraint(FglJcrProductProperties.EXT_ID, Collections.singleton(extId));
+        builder.addPublishStatusConstraint(Collections.singleton(status));
+        builder.addSeekConstraint(FglJcrProductProperties.EXT_ID, "ASC", SeekToken.of(extId, extId));
+        builder.addSortingClause(Collections.singleton(FglJcrProductProperties.EXT_ID),
+                Collections.singleton("ASC"));
+        return builder;
+    }
+}
@@ -0,0 +1,112 @@
+package com.jcr.sling.junit.slingtest.query.index;
+
+import com.day.cq.commons.jcr.JcrConstants;
+import com.day.cq.commons.jcr.JcrUtil;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.jcr.sling.junit.slingtest.query.add.FglJcrProductProperties;
+import org.apache.sling.commons.testing.jcr.RepositoryProvider;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.jcr.Node;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class ProductIndexTest {
+
+    private static final String ROOT_NODE_PATH = "/etc/commerce/products/sportchek/source";
+    private static final String ANY_BRAND = "Any Brand";
+
+    private final ProductIndex index = new ProductIndex();
+
+    private Session session;
+    private Node rootNode;
+
+    @Before
+    public void setUp() throws RepositoryException {
+        session = RepositoryProvider.instance().getRepository().loginAdministrative(null);
+        rootNode = JcrUtil.createPath(ROOT_NODE_PATH, JcrConstants.NT_UNSTRUCTURED, session);
+
+        for (int i = 0; i < 5; i++) {
+            index.put(createProductNode("product" + i, String.valueOf(i), i % 2 == 0 ? ANY_BRAND : "Other Brand", i));
+        }
+        session.save();
+    }
+
+    @After
+    public void tearDown() throws RepositoryException {
+        try {
+            rootNode.remove();
+            session.save();
+        } finally {
+            session.logout();
+        }
+    }
+
+    @Test
+    public void shouldFilterSortAndPage() {
+        ProductIndexQuery query = new ProductIndexQuery();
+        query.setBrands(ImmutableSet.of(ANY_BRAND));
+        query.setSortProperty(FglJcrProductProperties.STATUS);
+        query.setDescending(true);
+        query.setLimit(2);
+
+        ProductIndex.Page page = index.search(query);
+
+        assertEquals(3, page.getTotal());
+        assertEquals(ImmutableList.of("4", "2"), page.getExtIds());
+    }
+
+    @Test
+    public void shouldSortManyProductsByPropertyThenExtId() throws RepositoryException {
+        List<String> expected = new ArrayList<>();
+        for (long status = 0; status < 3; status++) {
+            for (int i = 10; i < 50; i++) {
+                if (i % 3 == status) {
+                    expected.add(String.valueOf(i));
+                }
+            }
+        }
+        for (int i = 10; i < 50; i++) {
+            index.put(createProductNode("many" + i, String.valueOf(i), "Many Brand", i % 3));
+        }
+        ProductIndexQuery query = new ProductIndexQuery();
+        query.setBrands(ImmutableSet.of("Many Brand"));
+        query.setSortProperty(FglJcrProductProperties.STATUS);
+        query.setOffset(5);
+        query.setLimit(20);
+
+        ProductIndex.Page page = index.search(query);
+
+        assertEquals(40, page.getTotal());
+        assertEquals(expected.subList(5, 25), page.getExtIds());
+    }
+
+    @Test
+    public void shouldRemoveSubtree() {
+        index.remove(ROOT_NODE_PATH + "/product1");
+
+        ProductIndexQuery query = new ProductIndexQuery();
+        query.setPath(ROOT_NODE_PATH);
+        query.setPublishStatuses(ImmutableSet.of(1L, 3L));
+
+        assertEquals(ImmutableList.of("3"), index.search(query).getExtIds());
+    }
+
+    private Node createProductNode(final String name, final String extId, final String brand, final long status)
+            throws RepositoryException {
+        Node productNode = rootNode.addNode(name, JcrConstants.NT_UNSTRUCTURED)
+                .addNode(JcrConstants.JCR_CONTENT, JcrConstants.NT_UNSTRUCTURED)
+                .addNode("product", JcrConstants.NT_UNSTRUCTURED);
+        productNode.setProperty(FglJcrProductProperties.EXT_ID, extId);
+        productNode.setProperty(FglJcrProductProperties.ECOMM_BRAND, brand);
+        productNode.setProperty(FglJcrProductProperties.STATUS, status);
+        return productNode;
+    }
+}
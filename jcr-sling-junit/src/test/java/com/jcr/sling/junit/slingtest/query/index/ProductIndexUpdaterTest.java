@@ -0,0 +1,108 @@
+package com.jcr.sling.junit.slingtest.query.index;
+
+import com.day.cq.commons.jcr.JcrConstants;
+import com.day.cq.commons.jcr.JcrUtil;
+import com.jcr.sling.junit.slingtest.query.add.FglJcrProductProperties;
+import org.apache.sling.commons.testing.jcr.RepositoryProvider;
+import org.apache.sling.jcr.api.SlingRepository;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.mockito.stubbing.Answer;
+
+import javax.jcr.Node;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+import javax.jcr.observation.Event;
+import javax.jcr.observation.EventIterator;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+
+@RunWith(MockitoJUnitRunner.class)
+public class ProductIndexUpdaterTest {
+
+    private static final String ROOT_NODE_PATH = "/etc/commerce/products/sportchek/source";
+    private static final long TIMEOUT = 5000;
+
+    @Mock
+    private SlingRepository repository;
+
+    private final ProductIndex index = new ProductIndex();
+    private ProductIndexUpdater updater;
+    private Session session;
+    private Node rootNode;
+
+    @Before
+    public void setUp() throws RepositoryException {
+        session = RepositoryProvider.instance().getRepository().loginAdministrative(null);
+        rootNode = JcrUtil.createPath(ROOT_NODE_PATH, JcrConstants.NT_UNSTRUCTURED, session);
+        given(repository.loginAdministrative(null)).willAnswer(new Answer<Session>() {
+            @Override
+            public Session answer(final InvocationOnMock invocation) throws RepositoryException {
+                return RepositoryProvider.instance().getRepository().loginAdministrative(null);
+            }
+        });
+        updater = new ProductIndexUpdater(repository, index, 0, 100);
+    }
+
+    @After
+    public void tearDown() throws RepositoryException {
+        updater.stop();
+        try {
+            rootNode.remove();
+            session.save();
+        } finally {
+            session.logout();
+        }
+    }
+
+    @Test
+    public void shouldCoalesceChangesIntoOneBatch() throws Exception {
+        Node pageNode = rootNode.addNode("page", JcrConstants.NT_UNSTRUCTURED);
+        Node productNode = pageNode.addNode(JcrConstants.JCR_CONTENT, JcrConstants.NT_UNSTRUCTURED)
+                .addNode("product", JcrConstants.NT_UNSTRUCTURED);
+        productNode.setProperty(FglJcrProductProperties.EXT_ID, "424242");
+        session.save();
+
+        String extIdPath = productNode.getPath() + "/" + FglJcrProductProperties.EXT_ID;
+        updater.onEvent(events(event(Event.NODE_ADDED, pageNode.getPath()),
+                event(Event.PROPERTY_CHANGED, extIdPath), event(Event.PROPERTY_CHANGED, extIdPath)));
+        waitForBatch();
+
+        assertEquals(1, updater.getBatchCount());
+        assertEquals(2, updater.getLastBatchSize());
+        assertEquals(1, index.size());
+    }
+
+    private void waitForBatch() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT;
+        while (updater.getBatchCount() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+
+    private static Event event(final int type, final String path) throws RepositoryException {
+        Event event = mock(Event.class);
+        given(event.getType()).willReturn(type);
+        given(event.getPath()).willReturn(path);
+        return event;
+    }
+
+    private static EventIterator events(final Event first, final Event... rest) {
+        EventIterator events = mock(EventIterator.class);
+        Boolean[] hasNext = new Boolean[rest.length + 1];
+        for (int i = 0; i < rest.length; i++) {
+            hasNext[i] = true;
+        }
+        hasNext[rest.length] = false;
+        given(events.hasNext()).willReturn(true, hasNext);
+        given(events.nextEvent()).willReturn(first, rest);
+        return events;
+    }
+}
@@ -3,6 +3,7 @@ package com.jcr.sling.junit.slingtest.slingcontext;
 import com.day.cq.commons.jcr.JcrConstants;
 import com.day.cq.commons.jcr.JcrUtil;
 import com.day.cq.wcm.api.NameConstants;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSetMultimap;
 import com.google.common.collect.SetMultimap;
 import com.jcr.sling.junit.slingtest.callback.RegisterNodeTypes;
@@ -38,6 +39,7 @@ import static junit.framework.TestCase.assertNotNull;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.BDDMockito.given;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyCollectionOf;
 
 
 /**
@@ -96,6 +98,8 @@ public class ImprovedJcrProductsDAOImplTest {
         }
 
         given(usersDao.getUserDisplayName(any(String.class))).willReturn("Administrator");
+        given(usersDao.getUserDisplayNames(anyCollectionOf(String.class)))
+                .willReturn(ImmutableMap.of("admin", "Administrator"));
     }
 
 
@@ -0,0 +1,76 @@
+package com.jcr.sling.junit.wrongmock;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Iterators;
+import com.jcr.sling.junit.slingtest.query.add.FglJcrProductProperties;
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ValueMap;
+import org.apache.sling.api.wrappers.ValueMapDecorator;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import javax.servlet.ServletRequest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class CommerceAdaptationCacheTest {
+
+    private static final String PRODUCT_PATH = "/etc/commerce/products/sportchek/master/33/331234567";
+
+    @Mock
+    private ServletRequest request;
+
+    @Mock
+    private Resource productResource;
+
+    @Before
+    public void prepareMocks() {
+        when(productResource.getPath()).thenReturn(PRODUCT_PATH);
+        when(productResource.adaptTo(ValueMap.class)).thenReturn(new ValueMapDecorator(
+                ImmutableMap.<String, Object>of(FglJcrProductProperties.CODE, "331234567")));
+        when(productResource.listChildren()).thenReturn(Iterators.<Resource>emptyIterator());
+    }
+
+    @Test
+    public void shouldBuildProductOncePerRequest() {
+        CommerceAdaptationCache cache = CommerceAdaptationCache.of(request);
+        when(request.getAttribute(anyString())).thenReturn(cache);
+        long hits = CommerceAdaptationCache.getHitCount();
+        long misses = CommerceAdaptationCache.getMissCount();
+
+        Product product = cache.getProduct(productResource);
+
+        assertSame(product, CommerceAdaptationCache.of(request).getProduct(productResource));
+        assertEquals("331234567", product.getCode());
+        assertEquals(hits + 1, CommerceAdaptationCache.getHitCount());
+        assertEquals(misses + 1, CommerceAdaptationCache.getMissCount());
+        verify(request, times(1)).setAttribute(anyString(), eq(cache));
+        verify(productResource, times(1)).adaptTo(ValueMap.class);
+    }
+
+    @Test
+    public void shouldShareSkusOfCachedProduct() {
+        Resource skuResource = mock(Resource.class);
+        when(skuResource.getPath()).thenReturn(PRODUCT_PATH + "/3312345671");
+        when(skuResource.adaptTo(ValueMap.class)).thenReturn(new ValueMapDecorator(
+                ImmutableMap.<String, Object>of(FglJcrProductProperties.SKU_CODE, "3312345671")));
+        when(productResource.listChildren()).thenReturn(Iterators.singletonIterator(skuResource));
+        CommerceAdaptationCache cache = CommerceAdaptationCache.of(request);
+
+        Product product = cache.getProduct(productResource);
+
+        assertSame(product.getSkus().get(0), cache.getSku(skuResource));
+        verify(skuResource, times(1)).adaptTo(ValueMap.class);
+    }
+}
@@ -0,0 +1,47 @@
+package com.jcr.sling.junit.wrongmock;
+
+import com.jcr.sling.junit.slingtest.BrandCatalog;
+import com.jcr.sling.junit.slingtest.BrandSnapshot;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.mockito.BDDMockito.given;
+
+@RunWith(MockitoJUnitRunner.class)
+public class JcrBrandPageNameServiceImplTest {
+
+    @Mock
+    private BrandCatalog brandCatalog;
+
+    @InjectMocks
+    private final JcrBrandPageNameServiceImpl brandPageNameService = new JcrBrandPageNameServiceImpl();
+
+    @Test
+    public void shouldFindBrandPageIgnoringCase() {
+        given(brandCatalog.getSnapshot()).willReturn(BrandSnapshot.builder()
+                .addBrandPage("Nike", "nike-running")
+                .addBrandPage("nike", "nike-golf")
+                .addBrandPage("adidas", "adidas")
+                .build());
+
+        assertEquals("nike-running", brandPageNameService.getBrandPageName("NIKE"));
+        assertEquals("adidas", brandPageNameService.getBrandPageName("Adidas"));
+        assertNull(brandPageNameService.getBrandPageName("puma"));
+        assertNull(brandPageNameService.getBrandPageName(" "));
+    }
+
+    @Test
+    public void shouldFollowSnapshotOfCatalog() {
+        given(brandCatalog.getSnapshot()).willReturn(null, BrandSnapshot.builder()
+                .addBrandPage("puma", "puma")
+                .build());
+
+        assertNull(brandPageNameService.getBrandPageName("puma"));
+        assertEquals("puma", brandPageNameService.getBrandPageName("puma"));
+    }
+}
@@ -1,10 +1,12 @@
 package com.jcr.sling.junit.wrongmock;
 
 import com.day.cq.wcm.api.Page;
+import com.google.common.collect.ImmutableMap;
 import com.jcr.sling.junit.slingtest.query.add.FglJcrProductProperties;
 import org.apache.sling.api.resource.Resource;
 import org.apache.sling.api.resource.ResourceResolver;
 import org.apache.sling.api.resource.ValueMap;
+import org.apache.sling.api.wrappers.ValueMapDecorator;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -16,6 +18,7 @@ import javax.jcr.NodeIterator;
 import javax.jcr.Property;
 import javax.jcr.RepositoryException;
 import javax.jcr.Value;
+import javax.servlet.ServletRequest;
 import java.util.Locale;
 
 import static org.junit.Assert.assertEquals;
@@ -24,6 +27,8 @@ import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @RunWith(MockitoJUnitRunner.class)
@@ -77,6 +82,9 @@ public class ProductDetailLogoBeanTest {
     @Mock
     private ImageUrlResolverService mImageUrlResolverService;
 
+    @Mock
+    private BrandPageNameService brandPageNameService;
+
 
     private ProductDetailLogoBean brandLogoBean;
 
@@ -134,4 +142,30 @@ public class ProductDetailLogoBeanTest {
         assertTrue("Should have path to  same brand page ", brandLogoBean.getBrandPagePath().contains("nike.html"));
     }
 
-}
\ No newline at end of file
+    @Test
+    public void shouldLookUpBrandPageInService() {
+        when(brandPageNameService.getBrandPageName("nike")).thenReturn("Nike-Running");
+
+        ProductDetailLogoBean bean = new ProductDetailLogoBean(mPage, mResourceResolver, brandLogoService,
+                brandPageNameService);
+
+        assertTrue("Should have path to service brand page", bean.getBrandPagePath().endsWith("nike-running.html"));
+        verify(mResourceResolver, never()).getResource("/content/sportchek/en/brands");
+    }
+
+    @Test
+    public void shouldTakeProductFromRequestCache() {
+        ServletRequest request = mock(ServletRequest.class);
+        when(mProductResource.getPath()).thenReturn(PRODUCT_PATH);
+        when(mProductResource.adaptTo(ValueMap.class)).thenReturn(new ValueMapDecorator(ImmutableMap.<String, Object>of(
+                FglJcrProductProperties.CODE, "331234567", FglJcrProductProperties.ECOMM_BRAND, "nike")));
+        when(request.getAttribute(anyString())).thenReturn(CommerceAdaptationCache.of(request));
+
+        ProductDetailLogoBean bean = new ProductDetailLogoBean(mPage, mResourceResolver, brandLogoService, null,
+                request);
+
+        assertTrue(bean.getBrandPagePath().contains("nike.html"));
+        verify(brandLogoService).getBrandLogo(eq("331234567"), any(Locale.class));
+        verify(mProductResource, never()).adaptTo(Product.class);
+    }
+}
@@ -0,0 +1,155 @@
+package com.jcr.sling.junit.wrongmock;
+
+import com.day.cq.commons.jcr.JcrConstants;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Iterators;
+import com.google.common.collect.Maps;
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ValueMap;
+import org.apache.sling.api.wrappers.ValueMapDecorator;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import java.util.Calendar;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import static com.jcr.sling.junit.slingtest.query.add.FglJcrProductProperties.CODE;
+import static com.jcr.sling.junit.slingtest.query.add.FglJcrProductProperties.ECOMM_BRAND;
+import static com.jcr.sling.junit.slingtest.query.add.FglJcrProductProperties.ECOMM_LAST_MODIFIED_DATE;
+import static com.jcr.sling.junit.slingtest.query.add.FglJcrProductProperties.FEATURES;
+import static com.jcr.sling.junit.slingtest.query.add.FglJcrProductProperties.SKU_CODE;
+import static com.jcr.sling.junit.slingtest.query.add.FglJcrProductProperties.SKU_COLOR;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class ProductTest {
+
+    private static final String PRODUCT_PATH = "/etc/commerce/products/sportchek/master/33/331234567";
+
+    @Test
+    public void shouldLoadSkusOnFirstAccess() {
+        Resource red = resource(PRODUCT_PATH + "/3312345671", ImmutableMap.<String, Object>of(SKU_CODE, "3312345671",
+                SKU_COLOR, "20"));
+        Resource blue = resource(PRODUCT_PATH + "/3312345672", ImmutableMap.<String, Object>of(SKU_CODE, "3312345672",
+                SKU_COLOR, "10"));
+        Resource productResource = resource(PRODUCT_PATH, ImmutableMap.<String, Object>of(CODE, "331234567",
+                ECOMM_BRAND, "Nike"), red, blue);
+
+        Product product = Product.builder().newProduct(productResource).setReadThrough(true).build();
+
+        assertEquals("Nike", product.getBrand());
+        verify(productResource, never()).listChildren();
+
+        assertEquals(ImmutableSet.of("3312345671", "3312345672"), product.getSkuCodes());
+        assertEquals("3312345672", product.getSkus().get(0).getCode());
+        assertSame(product.getSkus().get(1), product.getSku("3312345671").get());
+        verify(productResource, times(1)).listChildren();
+        verify(red, never()).listChildren();
+
+        assertTrue(product.getSkus().get(1).getBarcodes().isEmpty());
+        assertTrue(product.getSkus().get(1).getBarcodes().isEmpty());
+        verify(red, times(1)).listChildren();
+    }
+
+    @Test
+    public void shouldReadSkusAfterResolverIsClosed() {
+        Resource sku = resource(PRODUCT_PATH + "/3312345671", ImmutableMap.<String, Object>of(SKU_CODE, "3312345671"));
+        Resource productResource = resource(PRODUCT_PATH, ImmutableMap.<String, Object>of(CODE, "331234567"), sku);
+
+        Product product = Product.builder().newProduct(productResource).build();
+        close(productResource);
+        close(sku);
+
+        assertEquals(ImmutableSet.of("3312345671"), product.getSkuCodes());
+        assertEquals("3312345671", product.getSkus().get(0).getCode());
+        assertTrue(product.getSkus().get(0).getBarcodes().isEmpty());
+    }
+
+    @Test
+    public void shouldReadPropertiesThroughWithoutCopy() {
+        Map<String, Object> barcodeProperties = Maps.newHashMap();
+        Resource barcode = resource(PRODUCT_PATH + "/3312345671/barcode", barcodeProperties);
+        Resource sku = resource(PRODUCT_PATH + "/3312345671", ImmutableMap.<String, Object>of(SKU_CODE, "3312345671"),
+                barcode);
+        Map<String, Object> productProperties = Maps.newHashMap();
+        Resource productResource = resource(PRODUCT_PATH, productProperties, sku);
+
+        Product product = Product.builder().newProduct(productResource).setReadThrough(true).build();
+        Product snapshot = Product.builder().newProduct(productResource).build();
+        productProperties.put(ECOMM_BRAND, "Nike");
+        barcodeProperties.put(CODE, "0123456789012");
+
+        assertEquals("Nike", product.getBrand());
+        assertNull(snapshot.getBrand());
+        assertEquals("0123456789012", product.getSkus().get(0).getBarcodes().get(0).getCode());
+    }
+
+    @Test
+    public void shouldCacheBulletListsUntilProductIsModified() {
+        Map<String, Object> properties = Maps.newHashMap();
+        properties.put(FEATURES, "&bull; Waterproof\n<p>Breathable</p>");
+        properties.put(ECOMM_LAST_MODIFIED_DATE, date(1000L));
+        Product product = Product.builder().newProduct(resource(PRODUCT_PATH + "-bullets", properties))
+                .setReadThrough(true).build();
+
+        List<String> bullets = product.getBulletFeatures(Locale.ENGLISH);
+        properties.put(FEATURES, "Windproof");
+
+        assertEquals(ImmutableList.of("Waterproof", "Breathable"), bullets);
+        assertSame(bullets, product.getBulletFeatures(Locale.ENGLISH));
+        assertTrue(product.getBulletFeatures(Locale.CANADA_FRENCH).isEmpty());
+
+        properties.put(ECOMM_LAST_MODIFIED_DATE, date(2000L));
+        assertEquals(ImmutableList.of("Windproof"), product.getBulletFeatures(Locale.ENGLISH));
+    }
+
+    @Test
+    public void shouldSanitizeBulletListsAgainWhenOnlyAuthored() {
+        Map<String, Object> properties = Maps.newHashMap();
+        properties.put(FEATURES, "Waterproof");
+        properties.put(ECOMM_LAST_MODIFIED_DATE, date(1000L));
+        properties.put(JcrConstants.JCR_LASTMODIFIED, date(1000L));
+        Product product = Product.builder().newProduct(resource(PRODUCT_PATH + "-authored", properties))
+                .setReadThrough(true).build();
+
+        assertEquals(ImmutableList.of("Waterproof"), product.getBulletFeatures(Locale.ENGLISH));
+        properties.put(FEATURES, "Windproof");
+        properties.put(JcrConstants.JCR_LASTMODIFIED, date(3000L));
+
+        assertEquals(ImmutableList.of("Windproof"), product.getBulletFeatures(Locale.ENGLISH));
+    }
+
+    private static Calendar date(final long time) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTimeInMillis(time);
+        return calendar;
+    }
+
+    private static void close(final Resource resource) {
+        IllegalStateException closed = new IllegalStateException("Resource resolver is already closed");
+        when(resource.listChildren()).thenThrow(closed);
+        when(resource.adaptTo(ValueMap.class)).thenThrow(closed);
+    }
+
+    private static Resource resource(final String path, final Map<String, Object> properties,
+            final Resource... children) {
+        Resource resource = mock(Resource.class);
+        when(resource.getPath()).thenReturn(path);
+        when(resource.adaptTo(ValueMap.class)).thenReturn(new ValueMapDecorator(properties));
+        when(resource.listChildren()).thenReturn(Iterators.forArray(children));
+        return resource;
+    }
+}